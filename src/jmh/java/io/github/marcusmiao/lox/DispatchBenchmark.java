@@ -0,0 +1,180 @@
+package io.github.marcusmiao.lox;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the generated double-dispatch visitor on {@link Expr} against the {@code --records}
+ * variant ({@link SealedExpr}, regenerate with
+ * {@code generate_ast --records src/jmh/java/io/github/marcusmiao/lox SealedExpr}), both through
+ * its visitor and through a type-check chain. Each traversal computes the length AstPrinter would
+ * print, so the work per node matches and no output is allocated.
+ *
+ * <p>The build targets Java 17, where pattern matching in {@code switch} is still a preview, so
+ * the pattern traversal uses an {@code instanceof} chain as a stand-in. It is not what such a
+ * switch compiles to: that goes through an {@code invokedynamic} call to
+ * {@code SwitchBootstraps.typeSwitch}, whose cost this benchmark does not measure.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DispatchBenchmark {
+  @Param({"operators", "nested"})
+  public String shape;
+
+  // Both traversals recurse, so keep left-associative chains shallow enough for the stack.
+  @Param({"4096"})
+  public int size;
+
+  private Expr classTree;
+  private SealedExpr recordTree;
+
+  @Setup
+  public void setUp() {
+    Lox.hadError = false;
+    classTree = new Parser(new Scanner(Workloads.generate(shape, size)).scanTokens()).parse();
+    recordTree = convert(classTree);
+    if (Lox.hadError || classLength(classTree) != patternLength(recordTree)) {
+      throw new IllegalStateException("Workload " + shape + " is not comparable");
+    }
+  }
+
+  @Benchmark
+  public long classVisitor() {
+    return classLength(classTree);
+  }
+
+  @Benchmark
+  public long recordVisitor() {
+    RecordLength visitor = new RecordLength();
+    recordTree.accept(visitor);
+    return visitor.length;
+  }
+
+  @Benchmark
+  public long recordPattern() {
+    return patternLength(recordTree);
+  }
+
+  // ===============================================================================================
+
+  private static long classLength(Expr expr) {
+    ClassLength visitor = new ClassLength();
+    expr.accept(visitor);
+    return visitor.length;
+  }
+
+  private static final class ClassLength implements Expr.Visitor<Void> {
+    long length;
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+      length += 4 + expr.operator.lexeme.length();
+      expr.left.accept(this);
+      expr.right.accept(this);
+      return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+      length += 8;
+      expr.expression.accept(this);
+      return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+      length += literalLength(expr.value);
+      return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+      length += 3 + expr.operator.lexeme.length();
+      expr.right.accept(this);
+      return null;
+    }
+  }
+
+  private static final class RecordLength implements SealedExpr.Visitor<Void> {
+    long length;
+
+    @Override
+    public Void visitBinarySealedExpr(SealedExpr.Binary expr) {
+      length += 4 + expr.operator().lexeme.length();
+      expr.left().accept(this);
+      expr.right().accept(this);
+      return null;
+    }
+
+    @Override
+    public Void visitGroupingSealedExpr(SealedExpr.Grouping expr) {
+      length += 8;
+      expr.expression().accept(this);
+      return null;
+    }
+
+    @Override
+    public Void visitLiteralSealedExpr(SealedExpr.Literal expr) {
+      length += literalLength(expr.value());
+      return null;
+    }
+
+    @Override
+    public Void visitUnarySealedExpr(SealedExpr.Unary expr) {
+      length += 3 + expr.operator().lexeme.length();
+      expr.right().accept(this);
+      return null;
+    }
+  }
+
+  private static long patternLength(SealedExpr expr) {
+    if (expr instanceof SealedExpr.Binary binary) {
+      return 4 + binary.operator().lexeme.length()
+          + patternLength(binary.left()) + patternLength(binary.right());
+    } else if (expr instanceof SealedExpr.Grouping grouping) {
+      return 8 + patternLength(grouping.expression());
+    } else if (expr instanceof SealedExpr.Literal literal) {
+      return literalLength(literal.value());
+    } else {
+      SealedExpr.Unary unary = (SealedExpr.Unary) expr;
+      return 3 + unary.operator().lexeme.length() + patternLength(unary.right());
+    }
+  }
+
+  private static int literalLength(Object value) {
+    if (value == null) {
+      return 3;
+    }
+    if (value instanceof String) {
+      return ((String) value).length();
+    }
+    return value instanceof Boolean ? ((Boolean) value ? 4 : 5) : 8;
+  }
+
+  private static SealedExpr convert(Expr expr) {
+    if (expr instanceof Expr.Binary binary) {
+      return new SealedExpr.Binary(convert(binary.left), binary.operator, convert(binary.right));
+    } else if (expr instanceof Expr.Grouping grouping) {
+      return new SealedExpr.Grouping(convert(grouping.expression));
+    } else if (expr instanceof Expr.Literal literal) {
+      return new SealedExpr.Literal(literal.value);
+    } else {
+      Expr.Unary unary = (Expr.Unary) expr;
+      return new SealedExpr.Unary(unary.operator, convert(unary.right));
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package io.github.marcusmiao.lox;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Allocation rate of the front end on REPL-sized inputs: a fresh scanner and parser per source
+ * against a reused {@link FrontEnd}. Compare {@code gc.alloc.rate.norm} (bytes per operation).
+ *
+ * <p>{@code budgeted} is {@code reused} with every {@link Budget} limit set but never reached, so
+ * comparing the two shows the cost of the checks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FrontEndBenchmark {
+  @Param({"operators", "strings", "nested"})
+  public String shape;
+
+  @Param({"64"})
+  public int size;
+
+  private String source;
+  private final FrontEnd frontEnd = new FrontEnd();
+  private final Budget budget = Budget.parse("source:1000000000,tokens:1000000000,"
+      + "nodes:1000000000,depth:1000000,time:3600000");
+
+  @Setup
+  public void setUp() {
+    Lox.hadError = false;
+    source = Workloads.generate(shape, size);
+  }
+
+  @Benchmark
+  public Expr fresh() {
+    return new Parser(new Scanner(source, new SymbolTable(), Lox.console).scanTokens()).parse();
+  }
+
+  @Benchmark
+  public Expr reused() {
+    return frontEnd.parse(source, Lox.console);
+  }
+
+  @Benchmark
+  public Expr budgeted() {
+    return frontEnd.parse(source, Lox.console, budget);
+  }
+}
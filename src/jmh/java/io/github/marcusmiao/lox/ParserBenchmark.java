@@ -0,0 +1,61 @@
+package io.github.marcusmiao.lox;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ParserBenchmark {
+  // The parser has no identifier expressions yet, so that shape is scanner-only.
+  @Param({"operators", "comments", "strings", "nested"})
+  public String shape;
+
+  @Param({"65536"})
+  public int size;
+
+  private List<Token> tokens;
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Throughput {
+    public long tokens;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      tokens = 0;
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    Lox.hadError = false;
+    tokens = new Scanner(Workloads.generate(shape, size)).scanTokens();
+    if (Lox.hadError) {
+      throw new IllegalStateException("Workload " + shape + " does not scan");
+    }
+  }
+
+  @Benchmark
+  public Expr parse(Throughput throughput) {
+    Expr expr = new Parser(tokens).parse();
+    throughput.tokens += tokens.size();
+    return expr;
+  }
+}
@@ -0,0 +1,60 @@
+package io.github.marcusmiao.lox;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ScannerBenchmark {
+  @Param({"operators", "identifiers", "comments", "strings", "nested"})
+  public String shape;
+
+  @Param({"65536"})
+  public int size;
+
+  private String source;
+
+  /** Reported by JMH as {@code bytes/s} and {@code tokens/s} next to the ops/s score. */
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Throughput {
+    public long bytes;
+    public long tokens;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      bytes = 0;
+      tokens = 0;
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    source = Workloads.generate(shape, size);
+  }
+
+  @Benchmark
+  public List<Token> scanTokens(Throughput throughput) {
+    List<Token> tokens = new Scanner(source).scanTokens();
+    throughput.bytes += source.length();
+    throughput.tokens += tokens.size();
+    return tokens;
+  }
+}
@@ -0,0 +1,39 @@
+// This file is generated by GenerateAst.java
+package io.github.marcusmiao.lox;
+
+import java.util.List;
+
+sealed interface SealedExpr {
+  interface Visitor<R> {
+    R visitBinarySealedExpr(Binary sealedexpr);
+    R visitGroupingSealedExpr(Grouping sealedexpr);
+    R visitLiteralSealedExpr(Literal sealedexpr);
+    R visitUnarySealedExpr(Unary sealedexpr);
+  }
+  record Binary(SealedExpr left, Token operator, SealedExpr right) implements SealedExpr {
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visitBinarySealedExpr(this);
+    }
+  }
+  record Grouping(SealedExpr expression) implements SealedExpr {
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visitGroupingSealedExpr(this);
+    }
+  }
+  record Literal(Object value) implements SealedExpr {
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visitLiteralSealedExpr(this);
+    }
+  }
+  record Unary(Token operator, SealedExpr right) implements SealedExpr {
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+        return visitor.visitUnarySealedExpr(this);
+    }
+  }
+
+  <R> R accept(Visitor<R> visitor);
+}
@@ -0,0 +1,60 @@
+package io.github.marcusmiao.lox;
+
+import io.github.marcusmiao.tool.GenerateWorkload;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Representative benchmark inputs, produced by {@link GenerateWorkload} with a fixed seed. Every
+ * shape except {@code identifiers} is a single expression the current {@link Parser} accepts.
+ */
+final class Workloads {
+  static final String OPERATORS = "operators";
+  static final String IDENTIFIERS = "identifiers";
+  static final String COMMENTS = "comments";
+  static final String STRINGS = "strings";
+  static final String NESTED = "nested";
+
+  private Workloads() {}
+
+  static GenerateWorkload.Options options(String shape, int size) {
+    GenerateWorkload.Options options = new GenerateWorkload.Options();
+    options.bytes = size;
+    switch (shape) {
+      case OPERATORS:
+        options.nesting = 0.1;
+        options.unaryRatio = 0.3;
+        options.literals = "number:1";
+        break;
+      case IDENTIFIERS:
+        options.nesting = 0;
+        options.unaryRatio = 0;
+        options.literalDensity = 0;
+        break;
+      case COMMENTS:
+        options.commentRatio = 0.8;
+        break;
+      case STRINGS:
+        options.literals = "string:1";
+        break;
+      case NESTED:
+        options.maxDepth = 32;
+        options.nesting = 0.45;
+        options.unaryRatio = 0.2;
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown shape " + shape);
+    }
+    return options;
+  }
+
+  static String generate(String shape, int size) {
+    StringBuilder sb = new StringBuilder(size + 256);
+    try {
+      GenerateWorkload.generate(options(shape, size), sb);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return sb.toString();
+  }
+}
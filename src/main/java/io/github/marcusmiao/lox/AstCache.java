@@ -0,0 +1,137 @@
+package io.github.marcusmiao.lox;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * On-disk cache of parsed {@link Expr} trees keyed by the SHA-256 of the source bytes, the charset
+ * they are decoded with and a fingerprint of the code that builds and encodes trees.
+ *
+ * <p>The fingerprint covers the class files of the scanner, the parser, the tree classes and the
+ * codec, so a change to any of them misses every older entry even if {@link AstCodec#VERSION} was
+ * not bumped.
+ *
+ * <p>Each entry is the 32-byte digest of its source followed by an {@link AstCodec} payload.
+ * Entries that are truncated, fail their checksum, were written by another format version or
+ * whose digest does not match are treated as misses and overwritten on the next store.
+ */
+class AstCache {
+  private static final int DIGEST_LENGTH = 32;
+  private static final Class<?>[] FINGERPRINTED = {
+      Scanner.class, Parser.class, TokenType.class, AstCodec.class, Expr.class, Expr.Binary.class,
+      Expr.Grouping.class, Expr.Literal.class, Expr.Unary.class
+  };
+  private static final byte[] FINGERPRINT = fingerprint();
+
+  private final Path directory;
+  private final byte[] charset;
+
+  AstCache(Path directory, Charset charset) {
+    this.directory = directory;
+    this.charset = charset.name().getBytes(StandardCharsets.US_ASCII);
+  }
+
+  Expr load(byte[] source) {
+    byte[] digest = digest(source);
+    Path entry = entryPath(digest);
+    try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < DIGEST_LENGTH || size > Integer.MAX_VALUE) {
+        return null;
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      for (int i = 0; i < DIGEST_LENGTH; i++) {
+        if (buffer.get() != digest[i]) {
+          return null;
+        }
+      }
+      return AstCodec.decode(buffer);
+    } catch (IOException e) {
+      // Missing, unreadable and corrupt entries are all plain misses.
+      return null;
+    }
+  }
+
+  void store(byte[] source, Expr expr) {
+    byte[] digest = digest(source);
+    byte[] payload = AstCodec.encode(expr);
+    Path temp = null;
+    try {
+      Files.createDirectories(directory);
+      temp = Files.createTempFile(directory, "entry", ".tmp");
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        ByteBuffer buffer = ByteBuffer.allocate(DIGEST_LENGTH + payload.length);
+        buffer.put(digest).put(payload).flip();
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+      // Readers either see the previous entry or the complete new one, never a partial write.
+      Files.move(temp, entryPath(digest), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      temp = null;
+    } catch (IOException e) {
+      // The cache is only an accelerator; failing to populate it must not fail the run.
+    } finally {
+      if (temp != null) {
+        try {
+          Files.deleteIfExists(temp);
+        } catch (IOException ignored) {
+          // Best effort.
+        }
+      }
+    }
+  }
+
+  private Path entryPath(byte[] digest) {
+    StringBuilder name = new StringBuilder(DIGEST_LENGTH * 2 + 4);
+    for (byte b : digest) {
+      name.append(Character.forDigit((b >> 4) & 0xf, 16));
+      name.append(Character.forDigit(b & 0xf, 16));
+    }
+    return directory.resolve(name.append(".ast").toString());
+  }
+
+  private byte[] digest(byte[] source) {
+    MessageDigest digest = sha256();
+    digest.update(FINGERPRINT);
+    digest.update(charset);
+    digest.update((byte) 0);
+    return digest.digest(source);
+  }
+
+  private static byte[] fingerprint() {
+    MessageDigest digest = sha256();
+    digest.update((byte) AstCodec.VERSION);
+    for (Class<?> type : FINGERPRINTED) {
+      String resource = "/" + type.getName().replace('.', '/') + ".class";
+      try (InputStream in = type.getResourceAsStream(resource)) {
+        if (in != null) {
+          digest.update(in.readAllBytes());
+        }
+      } catch (IOException e) {
+        // Without the class file, the format version alone has to do.
+      }
+    }
+    return digest.digest();
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is required by every Java platform", e);
+    }
+  }
+}
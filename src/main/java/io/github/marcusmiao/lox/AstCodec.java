@@ -0,0 +1,332 @@
+package io.github.marcusmiao.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary serialization of {@link Expr} trees.
+ *
+ * <pre>
+ * file     := magic "LOXA" | u8 version | varint poolSize | entry* | varint nodeCount | node*
+ *             | u32 crc32(everything before it)
+ * entry    := u8 kind (STRING: varint length, utf-8 bytes | NUMBER: f64 | INTEGER: zigzag varint)
+ * node     := u8 tag [operands]
+ * </pre>
+ *
+ * <p>Nodes are written in post-order, so decoding is a single pass over an operand stack and
+ * never recurses, no matter how deep the tree is. Operators are stored as their {@link TokenType}
+ * ordinal, so reordering {@code TokenType} requires bumping {@link #VERSION}.
+ */
+final class AstCodec {
+  static final int VERSION = 1;
+
+  private static final byte[] MAGIC = {'L', 'O', 'X', 'A'};
+
+  private static final int POOL_STRING = 1;
+  private static final int POOL_NUMBER = 2;
+  private static final int POOL_INTEGER = 3;
+
+  private static final int TAG_NIL = 0;
+  private static final int TAG_TRUE = 1;
+  private static final int TAG_FALSE = 2;
+  private static final int TAG_LITERAL = 3;
+  private static final int TAG_GROUPING = 4;
+  private static final int TAG_UNARY = 5;
+  private static final int TAG_BINARY = 6;
+
+  private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+  static class FormatException extends IOException {
+    FormatException(String message) {
+      super(message);
+    }
+  }
+
+  private AstCodec() {}
+
+  static byte[] encode(Expr root) {
+    List<Expr> postOrder = postOrder(root);
+    Map<Object, Integer> poolIndex = new HashMap<>();
+    List<Object> pool = new ArrayList<>();
+    ByteArrayOutputStream nodes = new ByteArrayOutputStream();
+
+    for (Expr expr : postOrder) {
+      if (expr instanceof Expr.Literal) {
+        Object value = ((Expr.Literal) expr).value;
+        if (value == null) {
+          nodes.write(TAG_NIL);
+        } else if (value instanceof Boolean) {
+          nodes.write((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else {
+          nodes.write(TAG_LITERAL);
+          writeVarint(nodes, intern(pool, poolIndex, value));
+        }
+      } else if (expr instanceof Expr.Grouping) {
+        nodes.write(TAG_GROUPING);
+      } else if (expr instanceof Expr.Unary) {
+        nodes.write(TAG_UNARY);
+        writeOperator(nodes, ((Expr.Unary) expr).operator, pool, poolIndex);
+      } else {
+        nodes.write(TAG_BINARY);
+        writeOperator(nodes, ((Expr.Binary) expr).operator, pool, poolIndex);
+      }
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream(nodes.size() + 64);
+    out.write(MAGIC, 0, MAGIC.length);
+    out.write(VERSION);
+    writeVarint(out, pool.size());
+    for (Object value : pool) {
+      writePoolEntry(out, value);
+    }
+    writeVarint(out, postOrder.size());
+    byte[] nodeBytes = nodes.toByteArray();
+    out.write(nodeBytes, 0, nodeBytes.length);
+
+    CRC32 crc = new CRC32();
+    byte[] body = out.toByteArray();
+    crc.update(body, 0, body.length);
+    long checksum = crc.getValue();
+    byte[] result = new byte[body.length + 4];
+    System.arraycopy(body, 0, result, 0, body.length);
+    for (int i = 0; i < 4; i++) {
+      result[body.length + i] = (byte) (checksum >>> (24 - 8 * i));
+    }
+    return result;
+  }
+
+  /** Decodes the bytes between {@code buffer.position()} and {@code buffer.limit()}. */
+  static Expr decode(ByteBuffer buffer) throws FormatException {
+    ByteBuffer in = buffer.slice();
+    if (in.remaining() < MAGIC.length + 1 + 4) {
+      throw new FormatException("Truncated AST");
+    }
+    verifyChecksum(in);
+    in.limit(in.limit() - 4);
+
+    try {
+      for (byte b : MAGIC) {
+        if (in.get() != b) {
+          throw new FormatException("Bad magic");
+        }
+      }
+      int version = in.get() & 0xff;
+      if (version != VERSION) {
+        throw new FormatException("Unsupported AST version " + version);
+      }
+
+      Object[] pool = new Object[readCount(in)];
+      for (int i = 0; i < pool.length; i++) {
+        pool[i] = readPoolEntry(in);
+      }
+
+      int nodeCount = readCount(in);
+      Deque<Expr> stack = new ArrayDeque<>();
+      for (int i = 0; i < nodeCount; i++) {
+        int tag = in.get() & 0xff;
+        switch (tag) {
+          case TAG_NIL:
+            stack.push(new Expr.Literal(null));
+            break;
+          case TAG_TRUE:
+            stack.push(new Expr.Literal(true));
+            break;
+          case TAG_FALSE:
+            stack.push(new Expr.Literal(false));
+            break;
+          case TAG_LITERAL:
+            stack.push(new Expr.Literal(poolEntry(pool, readVarint(in))));
+            break;
+          case TAG_GROUPING:
+            stack.push(new Expr.Grouping(pop(stack)));
+            break;
+          case TAG_UNARY: {
+            Token operator = readOperator(in, pool);
+            stack.push(new Expr.Unary(operator, pop(stack)));
+            break;
+          }
+          case TAG_BINARY: {
+            Token operator = readOperator(in, pool);
+            Expr right = pop(stack);
+            Expr left = pop(stack);
+            stack.push(new Expr.Binary(left, operator, right));
+            break;
+          }
+          default:
+            throw new FormatException("Unknown node tag " + tag);
+        }
+      }
+      if (stack.size() != 1 || in.hasRemaining()) {
+        throw new FormatException("Malformed node stream");
+      }
+      return stack.pop();
+    } catch (BufferUnderflowException e) {
+      throw new FormatException("Truncated AST");
+    }
+  }
+
+  // ===============================================================================================
+
+  private static List<Expr> postOrder(Expr root) {
+    // Reverse of a (node, right, left) pre-order walk is a (left, right, node) post-order walk.
+    List<Expr> order = new ArrayList<>();
+    Deque<Expr> stack = new ArrayDeque<>();
+    stack.push(root);
+    while (!stack.isEmpty()) {
+      Expr expr = stack.pop();
+      order.add(expr);
+      if (expr instanceof Expr.Binary) {
+        stack.push(((Expr.Binary) expr).left);
+        stack.push(((Expr.Binary) expr).right);
+      } else if (expr instanceof Expr.Unary) {
+        stack.push(((Expr.Unary) expr).right);
+      } else if (expr instanceof Expr.Grouping) {
+        stack.push(((Expr.Grouping) expr).expression);
+      }
+    }
+    for (int i = 0, j = order.size() - 1; i < j; i++, j--) {
+      Expr tmp = order.get(i);
+      order.set(i, order.get(j));
+      order.set(j, tmp);
+    }
+    return order;
+  }
+
+  private static int intern(List<Object> pool, Map<Object, Integer> poolIndex, Object value) {
+    Integer index = poolIndex.get(value);
+    if (index == null) {
+      index = pool.size();
+      pool.add(value);
+      poolIndex.put(value, index);
+    }
+    return index;
+  }
+
+  private static void writeOperator(ByteArrayOutputStream out, Token operator, List<Object> pool,
+      Map<Object, Integer> poolIndex) {
+    writeVarint(out, operator.type.ordinal());
+    writeVarint(out, operator.line);
+    writeVarint(out, intern(pool, poolIndex, operator.lexeme));
+  }
+
+  private static Token readOperator(ByteBuffer in, Object[] pool) throws FormatException {
+    int type = readVarint(in);
+    if (type < 0 || type >= TOKEN_TYPES.length) {
+      throw new FormatException("Unknown token type " + type);
+    }
+    int line = readVarint(in);
+    Object lexeme = poolEntry(pool, readVarint(in));
+    if (!(lexeme instanceof String)) {
+      throw new FormatException("Operator lexeme is not a string");
+    }
+    return new Token(TOKEN_TYPES[type], (String) lexeme, null, line);
+  }
+
+  private static void writePoolEntry(ByteArrayOutputStream out, Object value) {
+    if (value instanceof String) {
+      byte[] utf8 = ((String) value).getBytes(StandardCharsets.UTF_8);
+      out.write(POOL_STRING);
+      writeVarint(out, utf8.length);
+      out.write(utf8, 0, utf8.length);
+    } else if (value instanceof Double) {
+      long bits = Double.doubleToRawLongBits((Double) value);
+      out.write(POOL_NUMBER);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        out.write((int) (bits >>> shift));
+      }
+    } else if (value instanceof Integer) {
+      int n = (Integer) value;
+      out.write(POOL_INTEGER);
+      writeVarint(out, (n << 1) ^ (n >> 31));
+    } else {
+      throw new IllegalArgumentException("Unsupported literal " + value.getClass().getName());
+    }
+  }
+
+  private static Object readPoolEntry(ByteBuffer in) throws FormatException {
+    int kind = in.get() & 0xff;
+    switch (kind) {
+      case POOL_STRING: {
+        int length = readVarint(in);
+        if (length > in.remaining()) {
+          throw new FormatException("Truncated string");
+        }
+        byte[] utf8 = new byte[length];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+      }
+      case POOL_NUMBER:
+        return in.getDouble();
+      case POOL_INTEGER: {
+        int n = readVarint(in);
+        return (n >>> 1) ^ -(n & 1);
+      }
+      default:
+        throw new FormatException("Unknown pool entry kind " + kind);
+    }
+  }
+
+  private static Object poolEntry(Object[] pool, int index) throws FormatException {
+    if (index < 0 || index >= pool.length) {
+      throw new FormatException("Pool index out of range " + index);
+    }
+    return pool[index];
+  }
+
+  private static Expr pop(Deque<Expr> stack) throws FormatException {
+    if (stack.isEmpty()) {
+      throw new FormatException("Operand stack underflow");
+    }
+    return stack.pop();
+  }
+
+  private static void verifyChecksum(ByteBuffer in) throws FormatException {
+    int end = in.limit() - 4;
+    CRC32 crc = new CRC32();
+    ByteBuffer body = in.duplicate();
+    body.limit(end);
+    crc.update(body);
+    long expected = in.getInt(end) & 0xffffffffL;
+    if (crc.getValue() != expected) {
+      throw new FormatException("Checksum mismatch");
+    }
+  }
+
+  private static void writeVarint(ByteArrayOutputStream out, int value) {
+    while ((value & ~0x7f) != 0) {
+      out.write((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+  }
+
+  private static int readVarint(ByteBuffer in) throws FormatException {
+    int value = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      byte b = in.get();
+      value |= (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new FormatException("Varint too long");
+  }
+
+  private static int readCount(ByteBuffer in) throws FormatException {
+    int count = readVarint(in);
+    if (count < 0 || count > in.remaining()) {
+      throw new FormatException("Count out of range " + count);
+    }
+    return count;
+  }
+}
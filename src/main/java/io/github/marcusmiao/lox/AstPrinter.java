@@ -4,45 +4,103 @@ import io.github.marcusmiao.lox.Expr.Binary;
 import io.github.marcusmiao.lox.Expr.Grouping;
 import io.github.marcusmiao.lox.Expr.Literal;
 import io.github.marcusmiao.lox.Expr.Unary;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
-class AstPrinter implements Expr.Visitor<String> {
+/**
+ * Prints an {@link Expr} in prefix notation straight into an {@link Appendable}.
+ *
+ * <p>The visitor methods never recurse: they push the pieces of their node (strings and child
+ * expressions) onto an explicit work stack, in reverse order, and {@link #print(Expr, Appendable)}
+ * drains it. Every character is written exactly once, and trees of any depth print without
+ * growing the call stack.
+ *
+ * <p>With a {@link Profiler}, every node is bracketed by {@link Profiler#enter} and
+ * {@link Profiler#exit}: a marker pushed beneath the node's pieces ends its visit once they have
+ * all been written.
+ */
+class AstPrinter implements Expr.Visitor<Void> {
+  private static final Object EXIT = new Object();
+
+  private final Deque<Object> work = new ArrayDeque<>();
+  private final Profiler profiler;
+
+  AstPrinter() {
+    this(null);
+  }
+
+  AstPrinter(Profiler profiler) {
+    this.profiler = profiler;
+  }
 
   public String print(Expr expr) {
-    return expr.accept(this);
+    StringBuilder sb = new StringBuilder();
+    try {
+      print(expr, sb);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return sb.toString();
+  }
+
+  /** Writes {@code expr} to {@code out} and returns the number of characters written. */
+  public long print(Expr expr, Appendable out) throws IOException {
+    long written = 0;
+    work.clear();
+    work.push(expr);
+    while (!work.isEmpty()) {
+      Object item = work.pop();
+      if (item instanceof Expr) {
+        if (profiler != null) {
+          profiler.enter((Expr) item);
+          work.push(EXIT);
+        }
+        ((Expr) item).accept(this);
+      } else if (item == EXIT) {
+        profiler.exit();
+      } else {
+        String text = (String) item;
+        out.append(text);
+        written += text.length();
+      }
+    }
+    return written;
   }
 
   @Override
-  public String visitBinaryExpr(Binary expr) {
-    return parenthesize(expr.operator.lexeme, expr.left, expr.right);
+  public Void visitBinaryExpr(Binary expr) {
+    parenthesize(expr.operator.lexeme, expr.left, expr.right);
+    return null;
   }
 
   @Override
-  public String visitGroupingExpr(Grouping expr) {
-    return parenthesize("group", expr.expression);
+  public Void visitGroupingExpr(Grouping expr) {
+    parenthesize("group", expr.expression);
+    return null;
   }
 
   @Override
-  public String visitLiteralExpr(Literal expr) {
-    if (expr.value == null) {
-      return "nil";
-    }
-    return expr.value.toString();
+  public Void visitLiteralExpr(Literal expr) {
+    work.push(expr.value == null ? "nil" : expr.value.toString());
+    return null;
   }
 
   @Override
-  public String visitUnaryExpr(Unary expr) {
-    return parenthesize(expr.operator.lexeme, expr.right);
+  public Void visitUnaryExpr(Unary expr) {
+    parenthesize(expr.operator.lexeme, expr.right);
+    return null;
   }
 
-  private String parenthesize(String name, Expr... exprs) {
-    StringBuilder sb = new StringBuilder();
-    sb.append("(").append(name);
-    for (Expr expr : exprs) {
-      sb.append(" ");
-      sb.append(expr.accept(this));
+  private void parenthesize(String name, Expr... exprs) {
+    work.push(")");
+    for (int i = exprs.length - 1; i >= 0; i--) {
+      work.push(exprs[i]);
+      work.push(" ");
     }
-    sb.append(")");
-    return sb.toString();
+    work.push(name);
+    work.push("(");
   }
 
   public static void main(String[] args) {
@@ -0,0 +1,121 @@
+package io.github.marcusmiao.lox;
+
+/**
+ * Upper bounds on the work one run may do: source size, tokens, AST nodes, nesting depth and wall
+ * time. The scanner and parser check them with plain counter comparisons and, once one is
+ * exceeded, report a diagnostic and stop instead of running out of heap or stack.
+ *
+ * <p>A budget is immutable and may be shared; the per-run state lives in a {@link Meter}.
+ */
+final class Budget {
+  static final Budget UNLIMITED = new Budget(Integer.MAX_VALUE, Integer.MAX_VALUE,
+      Integer.MAX_VALUE, Integer.MAX_VALUE, 0);
+
+  final int sourceChars;
+  final int tokens;
+  final int nodes;
+  final int depth;
+  /** Wall-time limit in milliseconds, or 0 for none. */
+  final long millis;
+
+  Budget(int sourceChars, int tokens, int nodes, int depth, long millis) {
+    this.sourceChars = sourceChars;
+    this.tokens = tokens;
+    this.nodes = nodes;
+    this.depth = depth;
+    this.millis = millis;
+  }
+
+  /**
+   * Parses a {@code name:value,...} list such as {@code tokens:100000,depth:256,time:50}. The
+   * names are {@code source}, {@code tokens}, {@code nodes}, {@code depth} and {@code time} (in
+   * milliseconds); omitted ones are unlimited.
+   */
+  static Budget parse(String spec) {
+    return parse(spec, UNLIMITED);
+  }
+
+  /** Like {@link #parse(String)}, but omitted limits are taken from {@code base}. */
+  static Budget parse(String spec, Budget base) {
+    int sourceChars = base.sourceChars;
+    int tokens = base.tokens;
+    int nodes = base.nodes;
+    int depth = base.depth;
+    long millis = base.millis;
+    for (String entry : spec.split(",")) {
+      int colon = entry.indexOf(':');
+      if (colon < 0) {
+        throw new IllegalArgumentException("Expected name:value but got " + entry);
+      }
+      String name = entry.substring(0, colon).trim();
+      long value;
+      try {
+        value = Long.parseLong(entry.substring(colon + 1).trim());
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Expected a number in " + entry);
+      }
+      if (value <= 0 || value > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Budget out of range: " + entry);
+      }
+      switch (name) {
+        case "source":
+          sourceChars = (int) value;
+          break;
+        case "tokens":
+          tokens = (int) value;
+          break;
+        case "nodes":
+          nodes = (int) value;
+          break;
+        case "depth":
+          depth = (int) value;
+          break;
+        case "time":
+          millis = value;
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown budget " + name);
+      }
+    }
+    return new Budget(sourceChars, tokens, nodes, depth, millis);
+  }
+
+  /** Starts the clock for one run. */
+  Meter meter() {
+    return new Meter(this);
+  }
+
+  @Override
+  public String toString() {
+    return "source:" + sourceChars + ",tokens:" + tokens + ",nodes:" + nodes + ",depth:" + depth
+        + ",time:" + millis;
+  }
+
+  // ===============================================================================================
+
+  /** The budget of one run, with its deadline. Single-threaded. */
+  static final class Meter {
+    // Reading the clock costs tens of nanoseconds, so it is only read every this many checks.
+    private static final int CLOCK_INTERVAL = 1024;
+
+    final Budget budget;
+    private final long deadline;
+    private int checks = 0;
+    private boolean expired = false;
+
+    private Meter(Budget budget) {
+      this.budget = budget;
+      this.deadline = budget.millis > 0 ? System.nanoTime() + budget.millis * 1_000_000 : 0;
+    }
+
+    /** False once the wall-time budget is spent. Stays false from then on. */
+    boolean inTime() {
+      if (deadline == 0 || ++checks < CLOCK_INTERVAL) {
+        return !expired;
+      }
+      checks = 0;
+      expired |= System.nanoTime() - deadline > 0;
+      return !expired;
+    }
+  }
+}
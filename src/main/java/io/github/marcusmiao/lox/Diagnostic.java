@@ -0,0 +1,78 @@
+package io.github.marcusmiao.lox;
+
+/**
+ * One problem found in the source. {@code offset} is the character offset of the offending
+ * token, or -1 when it is not known; {@code where} is the human-readable location suffix, such as
+ * {@code " at ')'"}, and may be empty.
+ */
+record Diagnostic(Severity severity, long offset, int line, String where, String message,
+    Phase phase) {
+
+  enum Severity {
+    ERROR("Error"), WARNING("Warning");
+
+    final String label;
+
+    Severity(String label) {
+      this.label = label;
+    }
+  }
+
+  enum Phase {
+    SCAN, PARSE
+  }
+
+  boolean isError() {
+    return severity == Severity.ERROR;
+  }
+
+  /** The classic {@code [line 1] Error at 'x': message} form. */
+  String format() {
+    return "[line " + line + "] " + severity.label + where + ": " + message;
+  }
+
+  String toJson() {
+    StringBuilder sb = new StringBuilder(96 + message.length());
+    sb.append("{\"severity\":\"").append(severity.name().toLowerCase())
+        .append("\",\"phase\":\"").append(phase.name().toLowerCase())
+        .append("\",\"line\":").append(line)
+        .append(",\"offset\":").append(offset)
+        .append(",\"where\":");
+    appendJsonString(sb, where);
+    sb.append(",\"message\":");
+    appendJsonString(sb, message);
+    return sb.append('}').toString();
+  }
+
+  private static void appendJsonString(StringBuilder sb, String value) {
+    sb.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          sb.append("\\\"");
+          break;
+        case '\\':
+          sb.append("\\\\");
+          break;
+        case '\n':
+          sb.append("\\n");
+          break;
+        case '\r':
+          sb.append("\\r");
+          break;
+        case '\t':
+          sb.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            sb.append(String.format("\\u%04x", (int) c));
+          } else {
+            sb.append(c);
+          }
+          break;
+      }
+    }
+    sb.append('"');
+  }
+}
@@ -0,0 +1,194 @@
+package io.github.marcusmiao.lox;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Where the scanner and parser send their {@link Diagnostic}s. Both keep going after an error and
+ * only stop early once the sink reports that it {@link #isFull() is full}.
+ */
+interface DiagnosticSink {
+  void report(Diagnostic diagnostic);
+
+  int errorCount();
+
+  default boolean hadError() {
+    return errorCount() > 0;
+  }
+
+  /** True once the sink will not accept more errors, so producers may stop looking for them. */
+  default boolean isFull() {
+    return false;
+  }
+
+  /** Writes out anything still buffered. */
+  default void flush() {}
+
+  // ===============================================================================================
+
+  /** Counts errors and drops everything after the first {@code maxErrors} of them. */
+  abstract class Limited implements DiagnosticSink {
+    private final int maxErrors;
+    private int errorCount = 0;
+    private int dropped = 0;
+
+    Limited(int maxErrors) {
+      this.maxErrors = maxErrors;
+    }
+
+    @Override
+    public final void report(Diagnostic diagnostic) {
+      if (diagnostic.isError()) {
+        if (errorCount >= maxErrors) {
+          dropped++;
+          return;
+        }
+        errorCount++;
+      }
+      accept(diagnostic);
+    }
+
+    abstract void accept(Diagnostic diagnostic);
+
+    @Override
+    public int errorCount() {
+      return errorCount;
+    }
+
+    @Override
+    public boolean isFull() {
+      return errorCount >= maxErrors;
+    }
+
+    /** The number of errors dropped since the last call. */
+    int takeDropped() {
+      int result = dropped;
+      dropped = 0;
+      return result;
+    }
+
+    /** Starts counting afresh, e.g. for the next REPL line. */
+    void reset() {
+      errorCount = 0;
+      dropped = 0;
+    }
+  }
+
+  /** Buffers formatted lines and writes them to the target in batches. */
+  abstract class Buffered extends Limited {
+    private static final int BATCH = 8192;
+
+    private final Appendable out;
+    private final StringBuilder buffer = new StringBuilder();
+
+    Buffered(Appendable out, int maxErrors) {
+      super(maxErrors);
+      this.out = out;
+    }
+
+    abstract String format(Diagnostic diagnostic);
+
+    abstract String formatDropped(int dropped);
+
+    @Override
+    final void accept(Diagnostic diagnostic) {
+      buffer.append(format(diagnostic)).append('\n');
+      if (buffer.length() >= BATCH) {
+        drain();
+      }
+    }
+
+    @Override
+    public void flush() {
+      int dropped = takeDropped();
+      if (dropped > 0) {
+        buffer.append(formatDropped(dropped)).append('\n');
+      }
+      drain();
+      if (out instanceof Flushable) {
+        try {
+          ((Flushable) out).flush();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+
+    private void drain() {
+      if (buffer.length() == 0) {
+        return;
+      }
+      try {
+        out.append(buffer);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      buffer.setLength(0);
+    }
+  }
+
+  /** {@code [line 1] Error at 'x': message}, one per line. */
+  final class Text extends Buffered {
+    Text(Appendable out, int maxErrors) {
+      super(out, maxErrors);
+    }
+
+    @Override
+    String format(Diagnostic diagnostic) {
+      return diagnostic.format();
+    }
+
+    @Override
+    String formatDropped(int dropped) {
+      return "[" + dropped + " more error(s) not shown]";
+    }
+  }
+
+  /** One JSON object per line. */
+  final class JsonLines extends Buffered {
+    JsonLines(Appendable out, int maxErrors) {
+      super(out, maxErrors);
+    }
+
+    @Override
+    String format(Diagnostic diagnostic) {
+      return diagnostic.toJson();
+    }
+
+    @Override
+    String formatDropped(int dropped) {
+      return "{\"severity\":\"warning\",\"dropped\":" + dropped + "}";
+    }
+  }
+
+  /** Keeps the diagnostics in memory. */
+  final class Collecting extends Limited {
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+
+    Collecting(int maxErrors) {
+      super(maxErrors);
+    }
+
+    @Override
+    void accept(Diagnostic diagnostic) {
+      diagnostics.add(diagnostic);
+    }
+
+    List<Diagnostic> diagnostics() {
+      return Collections.unmodifiableList(diagnostics);
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      for (Diagnostic diagnostic : diagnostics) {
+        sb.append(diagnostic.format()).append('\n');
+      }
+      return sb.toString();
+    }
+  }
+}
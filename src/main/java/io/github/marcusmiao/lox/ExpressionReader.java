@@ -0,0 +1,216 @@
+package io.github.marcusmiao.lox;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits a stream of Lox source into top-level expressions separated by {@code ;} or, in lines
+ * mode, also by newlines. Each expression is then scanned and parsed on its own, so memory stays
+ * bounded by the longest expression, not the input.
+ *
+ * <p>Separators inside strings and comments do not count, so the reader tracks just enough of the
+ * lexical grammar to tell: strings, line comments and nested block comments. In lines mode a
+ * newline ends even an open string or block comment, which the scanner then reports, so one
+ * stray quote cannot swallow the lines after it. Stretches with nothing but whitespace and
+ * comments are skipped. An expression longer than {@code maxChars} is
+ * reported and discarded up to the next separator, whatever it is nested in.
+ *
+ * <p>Before a read that would block, the reader flushes {@code idle}, so that results of the
+ * expressions already handed out reach the client while it is still typing or sending.
+ */
+final class ExpressionReader {
+  private static final int NORMAL = 0;
+  private static final int SLASH = 1;
+  private static final int LINE_COMMENT = 2;
+  private static final int BLOCK_COMMENT = 3;
+  private static final int BLOCK_STAR = 4;
+  private static final int BLOCK_SLASH = 5;
+  private static final int STRING = 6;
+  private static final int SKIP = 7;
+
+  private final Reader in;
+  private final boolean lines;
+  private final int maxChars;
+  private final DiagnosticSink sink;
+  private final Flushable idle;
+  private final char[] buffer = new char[8192];
+  private int position = 0;
+  private int limit = 0;
+  private boolean finished = false;
+
+  private final StringBuilder expression = new StringBuilder();
+  private int state = NORMAL;
+  private int nesting = 0;
+  private boolean significant = false;
+
+  // Where the reader is, and where the current expression started.
+  private int line = 1;
+  private long offset = 0;
+  private int startLine = 1;
+  private long startOffset = 0;
+
+  private String source;
+  private int sourceLine;
+  private long sourceOffset;
+
+  ExpressionReader(Reader in, boolean lines, int maxChars, DiagnosticSink sink) {
+    this(in, lines, maxChars, sink, () -> {});
+  }
+
+  ExpressionReader(Reader in, boolean lines, int maxChars, DiagnosticSink sink, Flushable idle) {
+    this.in = in;
+    this.lines = lines;
+    this.maxChars = maxChars;
+    this.sink = sink;
+    this.idle = idle;
+  }
+
+  /** Advances to the next expression. False at the end of the input. */
+  boolean next() throws IOException {
+    if (finished) {
+      return false;
+    }
+    for (;;) {
+      if (position == limit) {
+        if (!in.ready()) {
+          idle.flush();
+        }
+        limit = in.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit < 0) {
+          limit = 0;
+          finished = true;
+          return end();
+        }
+      }
+      char c = buffer[position++];
+      if (accept(c) && end()) {
+        return true;
+      }
+    }
+  }
+
+  /** The text of the current expression, without its separator. */
+  String source() {
+    return source;
+  }
+
+  /** The line the current expression starts on. */
+  int line() {
+    return sourceLine;
+  }
+
+  /** The character offset in the input at which the current expression starts. */
+  long offset() {
+    return sourceOffset;
+  }
+
+  // ===============================================================================================
+
+  /** Consumes {@code c} and returns true if it is a separator. */
+  private boolean accept(char c) {
+    boolean separator = false;
+    switch (state) {
+      case NORMAL:
+        separator = c == ';' || (c == '\n' && lines);
+        if (c == '/') {
+          state = SLASH;
+        } else if (c == '"') {
+          state = STRING;
+          significant = true;
+        } else if (!separator && c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+          significant = true;
+        }
+        break;
+      case SLASH:
+        if (c == '/') {
+          state = LINE_COMMENT;
+        } else if (c == '*') {
+          state = BLOCK_COMMENT;
+          nesting = 1;
+        } else {
+          // A lone slash is the division operator.
+          significant = true;
+          state = NORMAL;
+          return accept(c);
+        }
+        break;
+      case LINE_COMMENT:
+        if (c == '\n') {
+          state = NORMAL;
+          separator = lines;
+        }
+        break;
+      case BLOCK_COMMENT:
+        separator = c == '\n' && lines;
+        state = c == '*' ? BLOCK_STAR : c == '/' ? BLOCK_SLASH : BLOCK_COMMENT;
+        break;
+      case BLOCK_STAR:
+        separator = c == '\n' && lines;
+        if (c == '/') {
+          state = --nesting == 0 ? NORMAL : BLOCK_COMMENT;
+        } else {
+          state = c == '*' ? BLOCK_STAR : c == '/' ? BLOCK_SLASH : BLOCK_COMMENT;
+        }
+        break;
+      case BLOCK_SLASH:
+        separator = c == '\n' && lines;
+        if (c == '*') {
+          nesting++;
+          state = BLOCK_COMMENT;
+        } else {
+          state = c == '*' ? BLOCK_STAR : c == '/' ? BLOCK_SLASH : BLOCK_COMMENT;
+        }
+        break;
+      case STRING:
+        separator = c == '\n' && lines;
+        if (c == '"') {
+          state = NORMAL;
+        }
+        break;
+      default:
+        separator = c == ';' || (c == '\n' && lines);
+        break;
+    }
+
+    if (!separator && state != SKIP) {
+      expression.append(c);
+      if (expression.length() > maxChars) {
+        sink.report(new Diagnostic(Diagnostic.Severity.ERROR, startOffset, startLine, "",
+            "Expression longer than " + maxChars + " characters", Diagnostic.Phase.SCAN));
+        expression.setLength(0);
+        significant = false;
+        state = SKIP;
+      }
+    }
+    offset++;
+    if (c == '\n') {
+      line++;
+    }
+    return separator;
+  }
+
+  /**
+   * Closes the current expression. Returns true, with {@link #source()} set, if it is one to
+   * hand out; blank and skipped ones are dropped.
+   */
+  private boolean end() {
+    // An unterminated comment at the end of the input goes to the scanner, which reports it.
+    boolean result = significant || state == SLASH || state == BLOCK_COMMENT
+        || state == BLOCK_STAR || state == BLOCK_SLASH;
+    if (result) {
+      source = expression.toString();
+      sourceLine = startLine;
+      sourceOffset = startOffset;
+    }
+    expression.setLength(0);
+    significant = false;
+    // Whatever was left open, such as a comment at the end of the input, ends with the expression.
+    state = NORMAL;
+    nesting = 0;
+    startLine = line;
+    startOffset = offset;
+    return result;
+  }
+}
@@ -0,0 +1,121 @@
+package io.github.marcusmiao.lox;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A scanner and parser that are reset, not reallocated, for every source, so that steady-state
+ * processing of small inputs allocates little beyond the tokens and the AST.
+ *
+ * <p>An instance is single-threaded. Long-lived sessions keep one; request handlers borrow one
+ * with {@link #acquire()} and hand it back with {@link #release(FrontEnd)}. A pool suits virtual
+ * threads better than a {@code ThreadLocal}, because those threads are never reused.
+ */
+final class FrontEnd {
+  private static final int MAX_POOLED = 4 * Runtime.getRuntime().availableProcessors();
+  private static final ConcurrentLinkedQueue<FrontEnd> pool = new ConcurrentLinkedQueue<>();
+  private static final AtomicInteger pooled = new AtomicInteger();
+  // A pooled instance keeps no buffer larger than this, so one huge request does not pin memory.
+  private static final int MAX_RETAINED_BYTES = 64 << 10;
+
+  private final SymbolTable symbols;
+  private final Scanner scanner;
+  private final Parser parser;
+  private List<Token> tokens;
+  private Budget.Meter meter;
+
+  FrontEnd() {
+    this.symbols = new SymbolTable();
+    this.scanner = new Scanner("", symbols, Lox.console);
+    this.parser = new Parser(null, Lox.console);
+  }
+
+  static FrontEnd acquire() {
+    FrontEnd frontEnd = pool.poll();
+    if (frontEnd == null) {
+      return new FrontEnd();
+    }
+    pooled.decrementAndGet();
+    return frontEnd;
+  }
+
+  /**
+   * Returns a borrowed front end. Its symbols are forgotten so the next borrower starts clean, and
+   * it lets go of the last tokens and of any buffer above {@link #MAX_RETAINED_BYTES}.
+   */
+  static void release(FrontEnd frontEnd) {
+    frontEnd.tokens = null;
+    frontEnd.meter = null;
+    frontEnd.parser.reset(null, Lox.console, null);
+    frontEnd.scanner.trim(MAX_RETAINED_BYTES);
+    frontEnd.symbols.trim(MAX_RETAINED_BYTES);
+    if (pooled.incrementAndGet() <= MAX_POOLED) {
+      pool.offer(frontEnd);
+    } else {
+      pooled.decrementAndGet();
+    }
+  }
+
+  /**
+   * Forgets the identifiers seen so far, for a session that runs many independent sources and
+   * would otherwise keep every name it has ever seen.
+   */
+  void clearSymbols() {
+    symbols.trim(MAX_RETAINED_BYTES);
+  }
+
+  /** Scans {@code source}. The returned list is reused by the next call. */
+  List<Token> scan(String source, DiagnosticSink sink) {
+    return scan(source, sink, Budget.UNLIMITED);
+  }
+
+  /** Scans {@code source} within {@code budget}, which also covers the following {@link #parse}. */
+  List<Token> scan(String source, DiagnosticSink sink, Budget budget) {
+    return scan(source, sink, budget, 1, 0);
+  }
+
+  /** Scans {@code source} as the part of a larger input at {@code line} and {@code offset}. */
+  List<Token> scan(String source, DiagnosticSink sink, Budget budget, int line, long offset) {
+    meter = budget.meter();
+    if (source.length() > budget.sourceChars) {
+      // Checked before the scanner copies the source into its buffer.
+      sink.report(new Diagnostic(Diagnostic.Severity.ERROR, offset, line, "", "Source of "
+          + source.length() + " characters exceeds the budget of " + budget.sourceChars,
+          Diagnostic.Phase.SCAN));
+      source = "";
+    }
+    scanner.reset(source, sink, meter, line, offset);
+    tokens = scanner.scanTokens();
+    return tokens;
+  }
+
+  /** Parses the tokens of the last {@link #scan}. */
+  Expr parse(DiagnosticSink sink) {
+    parser.reset(tokens, sink, meter);
+    return parser.parse();
+  }
+
+  /** Like {@link #parse(DiagnosticSink)}, but tokens left over are an error. */
+  Expr parseComplete(DiagnosticSink sink) {
+    parser.reset(tokens, sink, meter);
+    return parser.parseComplete();
+  }
+
+  Expr parse(String source, DiagnosticSink sink) {
+    return parse(source, sink, Budget.UNLIMITED);
+  }
+
+  Expr parse(String source, DiagnosticSink sink, Budget budget) {
+    scan(source, sink, budget);
+    return parse(sink);
+  }
+
+  int nodeCount() {
+    return parser.nodeCount();
+  }
+
+  int maxDepth() {
+    return parser.maxDepth();
+  }
+}
@@ -0,0 +1,103 @@
+package io.github.marcusmiao.lox;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free log-linear histogram of nanosecond latencies.
+ *
+ * <p>Values below 32 get a bucket each; above that every power of two is split into 32 buckets,
+ * so any recorded value is reported within about 3% of its true value. Recording is one atomic
+ * increment and needs no allocation.
+ */
+final class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder total = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+
+  void record(long nanos) {
+    long value = Math.max(0, nanos);
+    counts.incrementAndGet(index(value));
+    total.increment();
+    sum.add(value);
+  }
+
+  void add(LatencyHistogram other) {
+    for (int i = 0; i < BUCKETS; i++) {
+      long count = other.counts.get(i);
+      if (count != 0) {
+        counts.addAndGet(i, count);
+      }
+    }
+    total.add(other.total.sum());
+    sum.add(other.sum.sum());
+  }
+
+  long count() {
+    return total.sum();
+  }
+
+  double mean() {
+    long count = count();
+    return count == 0 ? 0 : (double) sum.sum() / count;
+  }
+
+  /** The smallest bucket bound that at least {@code percentile}% of the values fall under. */
+  long percentile(double percentile) {
+    long count = count();
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return highestValue(i);
+      }
+    }
+    return max();
+  }
+
+  long max() {
+    for (int i = BUCKETS - 1; i >= 0; i--) {
+      if (counts.get(i) != 0) {
+        return highestValue(i);
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("count %d, mean %.1f us, p50 %.1f us, p90 %.1f us, p99 %.1f us, "
+            + "p99.9 %.1f us, max %.1f us",
+        count(), mean() / 1e3, percentile(50) / 1e3, percentile(90) / 1e3,
+        percentile(99) / 1e3, percentile(99.9) / 1e3, max() / 1e3);
+  }
+
+  // ===============================================================================================
+
+  private static int index(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int mantissa = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + mantissa;
+  }
+
+  private static long highestValue(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long mantissa = index % SUB_BUCKETS;
+    long width = 1L << (exponent - SUB_BUCKET_BITS);
+    return ((SUB_BUCKETS + mantissa) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+  }
+}
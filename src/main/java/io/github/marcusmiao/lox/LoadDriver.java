@@ -0,0 +1,366 @@
+package io.github.marcusmiao.lox;
+
+import io.github.marcusmiao.tool.GenerateWorkload;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Replays a corpus of Lox sources through scan, parse and print under sustained load and reports
+ * throughput, latency percentiles, GC activity and allocation.
+ *
+ * <p>Two load models are supported:
+ *
+ * <ul>
+ *   <li>Closed (the default): {@code --workers} threads each start the next request as soon as
+ *       the previous one completes. Latency is measured from the actual start.</li>
+ *   <li>Open ({@code --rate}): requests are scheduled at a fixed rate, whatever the pipeline does,
+ *       and their latency is measured from the scheduled start. A pause therefore shows up in
+ *       every request queued behind it rather than being hidden by the workers slowing down.</li>
+ * </ul>
+ *
+ * <p>Without corpus paths, a corpus is generated with {@link GenerateWorkload}.
+ */
+public final class LoadDriver {
+  private static final String USAGE = String.join("\n",
+      "Usage: load_driver [options] [file or directory of .lox files ...]",
+      "  --rate <n>       open model: n requests per second (default: closed model)",
+      "  --workers <n>    concurrent workers (default: number of processors)",
+      "  --duration <s>   measured seconds (default 10)",
+      "  --warmup <s>     unmeasured seconds before that (default 5)",
+      "  --generate <n>   sources to generate when no corpus is given (default 64)",
+      "  --size <n>       bytes per generated source (default 4096)",
+      "  --seed <n>       seed of the first generated source (default 0)",
+      "  --label <text>   name recorded with the results, e.g. a version",
+      "  --json <path>    also write the results as JSON");
+
+  private static final int MAX_ERRORS = 20;
+
+  public static class Options {
+    public double rate = 0;
+    public int workers = Runtime.getRuntime().availableProcessors();
+    public double duration = 10;
+    public double warmup = 5;
+    public String label = "";
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    Options options = new Options();
+    List<String> paths = new ArrayList<>();
+    int generate = 64;
+    int size = 4096;
+    long seed = 0;
+    String json = null;
+    try {
+      for (int i = 0; i < args.length; i++) {
+        String flag = args[i];
+        if (!flag.startsWith("--")) {
+          paths.add(flag);
+          continue;
+        }
+        if (i + 1 >= args.length) {
+          throw new IllegalArgumentException("Missing value for " + flag);
+        }
+        String value = args[++i];
+        switch (flag) {
+          case "--rate":
+            options.rate = Double.parseDouble(value);
+            break;
+          case "--workers":
+            options.workers = Integer.parseInt(value);
+            break;
+          case "--duration":
+            options.duration = Double.parseDouble(value);
+            break;
+          case "--warmup":
+            options.warmup = Double.parseDouble(value);
+            break;
+          case "--generate":
+            generate = Integer.parseInt(value);
+            break;
+          case "--size":
+            size = Integer.parseInt(value);
+            break;
+          case "--seed":
+            seed = Long.parseLong(value);
+            break;
+          case "--label":
+            options.label = value;
+            break;
+          case "--json":
+            json = value;
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown option " + flag);
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      System.exit(64);
+    }
+
+    List<String> corpus = paths.isEmpty() ? generate(generate, size, seed) : load(paths);
+    if (corpus.isEmpty()) {
+      System.err.println("The corpus is empty");
+      System.exit(66);
+    }
+    Result result = run(corpus, options);
+    System.out.println(result);
+    if (json != null) {
+      Files.write(Paths.get(json), (result.toJson() + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  /** Warms up, then measures, and returns the measurement. */
+  public static Result run(List<String> corpus, Options options) throws InterruptedException {
+    if (options.warmup > 0) {
+      drive(corpus, options, options.warmup);
+    }
+    return drive(corpus, options, options.duration);
+  }
+
+  /** The outcome of one measured run. Latencies are in nanoseconds. */
+  public static final class Result {
+    public final String label;
+    public final double rate;
+    public final int workers;
+    public final int corpus;
+    public final long requests;
+    public final long errors;
+    public final double seconds;
+    public final double throughput;
+    public final double mean;
+    public final long p50;
+    public final long p90;
+    public final long p99;
+    public final long p999;
+    public final long max;
+    public final long gcCount;
+    public final long gcMillis;
+    /** Bytes allocated by the workers, or -1 if the JVM cannot tell. */
+    public final long allocated;
+
+    private Result(Options options, int corpus, LatencyHistogram latency, long errors,
+        long nanos, long gcCount, long gcMillis, long allocated) {
+      this.label = options.label;
+      this.rate = options.rate;
+      this.workers = options.workers;
+      this.corpus = corpus;
+      this.requests = latency.count();
+      this.errors = errors;
+      this.seconds = nanos / 1e9;
+      this.throughput = requests / seconds;
+      this.mean = latency.mean();
+      this.p50 = latency.percentile(50);
+      this.p90 = latency.percentile(90);
+      this.p99 = latency.percentile(99);
+      this.p999 = latency.percentile(99.9);
+      this.max = latency.max();
+      this.gcCount = gcCount;
+      this.gcMillis = gcMillis;
+      this.allocated = allocated;
+    }
+
+    /** Allocation in MB per second, or -1 if unknown. */
+    public double allocationRate() {
+      return allocated < 0 ? -1 : allocated / seconds / (1 << 20);
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s%s model, %d workers, %d sources, %.1f s%n"
+              + "requests %d (%d with errors), throughput %.1f/s%n"
+              + "latency mean %.1f us, p50 %.1f us, p90 %.1f us, p99 %.1f us, p99.9 %.1f us, "
+              + "max %.1f us%n"
+              + "gc %d collections, %d ms; allocation %.1f MB/s, %d bytes/request",
+          label.isEmpty() ? "" : label + ": ", rate > 0 ? "open " + rate + "/s" : "closed",
+          workers, corpus, seconds, requests, errors, throughput, mean / 1e3, p50 / 1e3,
+          p90 / 1e3, p99 / 1e3, p999 / 1e3, max / 1e3, gcCount, gcMillis, allocationRate(),
+          allocated < 0 || requests == 0 ? -1 : allocated / requests);
+    }
+
+    public String toJson() {
+      StringBuilder sb = new StringBuilder("{\"label\":\"");
+      for (int i = 0; i < label.length(); i++) {
+        char c = label.charAt(i);
+        if (c == '"' || c == '\\') {
+          sb.append('\\').append(c);
+        } else if (c < 0x20) {
+          sb.append(String.format("\\u%04x", (int) c));
+        } else {
+          sb.append(c);
+        }
+      }
+      return sb.append("\",\"java\":\"").append(System.getProperty("java.version"))
+          .append("\",\"model\":\"").append(rate > 0 ? "open" : "closed")
+          .append("\",\"rate\":").append(rate)
+          .append(",\"workers\":").append(workers)
+          .append(",\"corpus\":").append(corpus)
+          .append(",\"seconds\":").append(seconds)
+          .append(",\"requests\":").append(requests)
+          .append(",\"errors\":").append(errors)
+          .append(",\"throughput\":").append(throughput)
+          .append(",\"latencyNanos\":{\"mean\":").append(mean)
+          .append(",\"p50\":").append(p50)
+          .append(",\"p90\":").append(p90)
+          .append(",\"p99\":").append(p99)
+          .append(",\"p99.9\":").append(p999)
+          .append(",\"max\":").append(max)
+          .append("},\"gcCount\":").append(gcCount)
+          .append(",\"gcMillis\":").append(gcMillis)
+          .append(",\"allocatedBytes\":").append(allocated)
+          .append('}').toString();
+    }
+  }
+
+  // ===============================================================================================
+
+  private static Result drive(List<String> corpus, Options options, double seconds)
+      throws InterruptedException {
+    LatencyHistogram latency = new LatencyHistogram();
+    LongAdder errors = new LongAdder();
+    LongAdder allocated = new LongAdder();
+    AtomicLong sequence = new AtomicLong();
+    long gcCount = -gcCount();
+    long gcMillis = -gcMillis();
+    long start = System.nanoTime();
+    long end = start + (long) (seconds * 1e9);
+    long interval = options.rate > 0 ? (long) (1e9 / options.rate) : 0;
+
+    Thread[] workers = new Thread[options.workers];
+    for (int w = 0; w < workers.length; w++) {
+      workers[w] = new Thread(() -> {
+        long allocatedBefore = allocatedBytes();
+        Writer sink = Writer.nullWriter();
+        for (;;) {
+          long i = sequence.getAndIncrement();
+          long scheduled;
+          if (interval > 0) {
+            scheduled = start + i * interval;
+            if (scheduled - end >= 0) {
+              break;
+            }
+            for (long wait; (wait = scheduled - System.nanoTime()) > 0; ) {
+              LockSupport.parkNanos(wait);
+            }
+          } else {
+            scheduled = System.nanoTime();
+            if (scheduled - end >= 0) {
+              break;
+            }
+          }
+          if (!process(corpus.get((int) (i % corpus.size())), sink)) {
+            errors.increment();
+          }
+          latency.record(System.nanoTime() - scheduled);
+        }
+        allocated.add(allocatedBefore < 0 ? 0 : allocatedBytes() - allocatedBefore);
+      }, "lox-load-" + w);
+      workers[w].start();
+    }
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    long nanos = System.nanoTime() - start;
+    gcCount += gcCount();
+    gcMillis += gcMillis();
+    return new Result(options, corpus.size(), latency, errors.sum(), nanos, gcCount, gcMillis,
+        allocatedBytes() < 0 ? -1 : allocated.sum());
+  }
+
+  /** Runs one request the way the server does. Returns false if it had errors. */
+  private static boolean process(String source, Writer out) {
+    FrontEnd frontEnd = FrontEnd.acquire();
+    try {
+      DiagnosticSink.Collecting errors = new DiagnosticSink.Collecting(MAX_ERRORS);
+      Expr expr = frontEnd.parse(source, errors);
+      if (errors.hadError()) {
+        return false;
+      }
+      new AstPrinter().print(expr, out);
+      return true;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      FrontEnd.release(frontEnd);
+    }
+  }
+
+  private static long gcCount() {
+    long total = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      total += Math.max(0, gc.getCollectionCount());
+    }
+    return total;
+  }
+
+  /**
+   * Accumulated collection time. Most collectors count only their pauses here; the concurrent
+   * ones also count some concurrent work.
+   */
+  private static long gcMillis() {
+    long total = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      total += Math.max(0, gc.getCollectionTime());
+    }
+    return total;
+  }
+
+  /** Bytes allocated so far by the current thread, or -1 if the JVM cannot tell. */
+  private static long allocatedBytes() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+      if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+        return hotspot.getCurrentThreadAllocatedBytes();
+      }
+    }
+    return -1;
+  }
+
+  private static List<String> generate(int count, int size, long seed) throws IOException {
+    List<String> corpus = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      GenerateWorkload.Options options = new GenerateWorkload.Options();
+      options.bytes = size;
+      options.seed = seed + i;
+      StringBuilder source = new StringBuilder(size + 128);
+      GenerateWorkload.generate(options, source);
+      corpus.add(source.toString());
+    }
+    return corpus;
+  }
+
+  private static List<String> load(List<String> paths) throws IOException {
+    List<String> corpus = new ArrayList<>();
+    for (String spec : paths) {
+      Path path = Paths.get(spec);
+      if (Files.isDirectory(path)) {
+        try (Stream<Path> files = Files.walk(path)) {
+          for (Path file : (Iterable<Path>) files.sorted()::iterator) {
+            if (file.toString().endsWith(".lox") && Files.isRegularFile(file)) {
+              corpus.add(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            }
+          }
+        }
+      } else {
+        corpus.add(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+      }
+    }
+    return corpus;
+  }
+}
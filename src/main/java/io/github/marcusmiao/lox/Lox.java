@@ -1,33 +1,197 @@
 package io.github.marcusmiao.lox;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 
 public class Lox {
   static boolean hadError = false;
+  private static int errorCount = 0;
+
+  static final int DEFAULT_MAX_ERRORS = 100;
+  private static final int PROFILE_SAMPLE_EVERY = 64;
+  private static final int PROFILE_TOP = 20;
+  private static final int MAX_STREAMED_EXPRESSION = 16 << 20;
+  private static DiagnosticSink.Limited diagnostics =
+      new DiagnosticSink.Text(System.err, DEFAULT_MAX_ERRORS);
+
+  /** Forwards to the configured diagnostics output and keeps {@link #hadError} up to date. */
+  static final DiagnosticSink console = new DiagnosticSink() {
+    @Override
+    public void report(Diagnostic diagnostic) {
+      diagnostics.report(diagnostic);
+      if (diagnostic.isError()) {
+        hadError = true;
+        errorCount++;
+      }
+    }
+
+    @Override
+    public int errorCount() {
+      return errorCount;
+    }
+
+    @Override
+    public boolean hadError() {
+      return hadError;
+    }
+
+    @Override
+    public boolean isFull() {
+      return diagnostics.isFull();
+    }
+
+    @Override
+    public void flush() {
+      diagnostics.flush();
+    }
+  };
+
+  static AstCache cache = openCache();
+  private static final FrontEnd frontEnd = new FrontEnd();
+  static Budget budget = Budget.UNLIMITED;
+  private static Profiler profiler = null;
 
   public static void main(String[] args) throws IOException {
-    if (args.length > 1) {
-      System.out.println("Usage: jlox [script]");
+    List<String> operands = new ArrayList<>();
+    boolean serve = false;
+    String stream = null;
+    boolean json = false;
+    int maxErrors = DEFAULT_MAX_ERRORS;
+    String budgetSpec = null;
+    for (String arg : args) {
+      if (arg.equals("--diagnostics=json")) {
+        json = true;
+      } else if (arg.equals("--diagnostics=text")) {
+        json = false;
+      } else if (arg.startsWith("--max-errors=")) {
+        maxErrors = parsePositive(arg.substring("--max-errors=".length()));
+      } else if (arg.startsWith("--budget=")) {
+        budgetSpec = arg.substring("--budget=".length());
+      } else if (arg.equals("--profile") || arg.startsWith("--profile=")) {
+        profile(arg.equals("--profile") ? null : arg.substring("--profile=".length()));
+      } else if (arg.equals("--stats")) {
+        Metrics.enable();
+        Runtime.getRuntime().addShutdownHook(
+            new Thread(() -> System.err.println(Metrics.snapshot())));
+      } else if (arg.equals("--stream") || arg.equals("--stream=lines")) {
+        stream = arg;
+      } else if (arg.equals("--serve")) {
+        serve = true;
+      } else {
+        operands.add(arg);
+      }
+    }
+    // The server's input comes from anyone who connects, so its entries refine a finite default.
+    Budget base = serve ? LoxServer.DEFAULT_BUDGET : Budget.UNLIMITED;
+    boolean badBudget = false;
+    try {
+      budget = budgetSpec == null ? base : Budget.parse(budgetSpec, base);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      badBudget = true;
+    }
+    if (badBudget || maxErrors < 1 || operands.size() > 1
+        || (operands.size() == 1 && operands.get(0).startsWith("--"))) {
+      System.out.println("Usage: jlox [--stats] [--diagnostics=text|json] [--max-errors=N]");
+      System.out.println("            [--budget=source:N,tokens:N,nodes:N,depth:N,time:MS]");
+      System.out.println("            [--profile[=collapsed-stacks-file]] [script]");
+      System.out.println("       jlox --stream[=lines] [options] [script]");
+      System.out.println("       jlox --serve [--budget=...] [port | host:port | unix:path]");
       System.exit(64);
-    } else if (args.length == 1) {
-       runFile(args[0]);
+    }
+    diagnostics = json
+        ? new DiagnosticSink.JsonLines(System.err, maxErrors)
+        : new DiagnosticSink.Text(System.err, maxErrors);
+    if (serve) {
+      serve(operands.isEmpty() ? null : operands.get(0));
+    } else if (stream != null) {
+      InputStream in = operands.isEmpty()
+          ? System.in
+          : Files.newInputStream(Paths.get(operands.get(0)));
+      Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+      if (!stream(new InputStreamReader(in, Charset.defaultCharset()), out,
+          stream.equals("--stream=lines"))) {
+        System.exit(65);
+      }
+    } else if (operands.size() == 1) {
+       runFile(operands.get(0));
     } else {
        runPrompt();
     }
   }
 
+  /**
+   * Profiles every printed tree. At exit the hottest sites go to stderr and, given a path, the
+   * collapsed stacks to that file.
+   */
+  private static void profile(String path) {
+    profiler = new Profiler(PROFILE_SAMPLE_EVERY);
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      try {
+        profiler.report(System.err, PROFILE_TOP);
+        if (path != null) {
+          try (Writer out = Files.newBufferedWriter(Paths.get(path))) {
+            profiler.writeCollapsed(out);
+          }
+        }
+      } catch (IOException e) {
+        System.err.println("Could not write the profile: " + e.getMessage());
+      }
+    }));
+  }
+
+  private static void serve(String address) throws IOException {
+    LoxServer server = new LoxServer(LoxServer.parseAddress(address), budget);
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      System.err.println("Latency: " + server.latency());
+      try {
+        server.close();
+      } catch (IOException ignored) {
+        // Exiting anyway.
+      }
+    }));
+    System.err.println("Listening on " + server.address());
+    server.serve();
+  }
+
   private static void runFile(String path) throws IOException {
-    byte[] bytes = Files.readAllBytes(Paths.get(path));
-    run(new String(bytes, Charset.defaultCharset()));
+    startRun();
+    Expr expr = compile(Files.readAllBytes(Paths.get(path)));
+    console.flush();
     if (hadError) {
       System.exit(65);
     }
+    print(expr);
+  }
+
+  /**
+   * Parses a whole file, or loads its tree from the cache. A cached tree skips the scanner and
+   * parser and with them the budget checks, so the cache is used only without a budget.
+   */
+  static Expr compile(byte[] bytes) {
+    AstCache cache = budget == Budget.UNLIMITED ? Lox.cache : null;
+    Expr expr = cache == null ? null : cache.load(bytes);
+    if (expr != null) {
+      Metrics.cacheHit();
+      return expr;
+    }
+    expr = parse(new String(bytes, Charset.defaultCharset()));
+    if (!hadError && cache != null) {
+      cache.store(bytes, expr);
+    }
+    return expr;
   }
 
   private static void runPrompt() throws IOException {
@@ -41,35 +205,125 @@ public class Lox {
         break;
       }
       run(line);
-      hadError = false;
     }
   }
 
-  private static void run(String bytes) {
-    Scanner scanner = new Scanner(bytes);
-    List<Token> tokens = scanner.scanTokens();
-    Parser parser = new Parser(tokens);
-    Expr expr = parser.parse();
+  static void run(String bytes) {
+    startRun();
+    Expr expr = parse(bytes);
+    console.flush();
     if (hadError) {
       return;
     }
-    System.out.println(new AstPrinter().print(expr));
+    print(expr);
   }
 
-  static void error(int line, String message) {
-    report(line, "", message);
+  /**
+   * Parses and prints every expression in {@code in} as soon as it is complete, one result per
+   * line. Output and diagnostics are flushed whenever the input has nothing more to read yet. A
+   * bad expression is reported and skipped, and the rest carry on. Returns false if any
+   * expression was bad.
+   */
+  static boolean stream(Reader in, Writer out, boolean lines) throws IOException {
+    ExpressionReader expressions = new ExpressionReader(in, lines,
+        Math.min(budget.sourceChars, MAX_STREAMED_EXPRESSION), console, () -> {
+          out.flush();
+          console.flush();
+        });
+    boolean failed = false;
+    boolean more;
+    do {
+      // Every expression is a run of its own, with its own error limit.
+      startRun();
+      more = expressions.next();
+      if (more) {
+        int errors = errorCount;
+        Expr expr = parse(expressions.source(), expressions.line(), expressions.offset(), true);
+        if (errorCount == errors) {
+          print(expr, out);
+        }
+        // Streamed expressions are independent, and an endless stream must not keep every name.
+        frontEnd.clearSymbols();
+      }
+      if (hadError) {
+        failed = true;
+        console.flush();
+      }
+    } while (more);
+    out.flush();
+    return !failed;
   }
 
-  static void error(Token token, String message) {
-    if (token.type == TokenType.EOF) {
-      report(token.line, "at end", message);
-    } else {
-      report(token.line, " at '" + token.lexeme + "'", message);
+  /**
+   * Starts a run: pending diagnostics are written out, and the error flag and the error limit
+   * start afresh. Symbols are kept, so a name has the same id on every line of a session.
+   */
+  static void startRun() {
+    diagnostics.flush();
+    diagnostics.reset();
+    hadError = false;
+  }
+
+  private static Expr parse(String source) {
+    return parse(source, 1, 0, false);
+  }
+
+  /** With {@code complete}, tokens left over after the expression are an error. */
+  private static Expr parse(String source, int line, long offset, boolean complete) {
+    LoxEvents.Scan scanEvent = new LoxEvents.Scan();
+    scanEvent.begin();
+    long start = System.nanoTime();
+    int errors = errorCount;
+    List<Token> tokens = frontEnd.scan(source, console, budget, line, offset);
+    Metrics.scanned(scanEvent, start, source.length(), tokens.size(), errorCount - errors);
+
+    LoxEvents.Parse parseEvent = new LoxEvents.Parse();
+    parseEvent.begin();
+    start = System.nanoTime();
+    errors = errorCount;
+    Expr expr = complete ? frontEnd.parseComplete(console) : frontEnd.parse(console);
+    Metrics.parsed(parseEvent, start, frontEnd.nodeCount(), frontEnd.maxDepth(),
+        errorCount - errors);
+    return expr;
+  }
+
+  private static void print(Expr expr) {
+    // Flushed, not closed: System.out outlives this run.
+    Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 13);
+    try {
+      print(expr, out);
+      out.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void print(Expr expr, Writer out) throws IOException {
+    LoxEvents.Print printEvent = new LoxEvents.Print();
+    printEvent.begin();
+    long start = System.nanoTime();
+    long written = new AstPrinter(profiler).print(expr, out);
+    out.write(System.lineSeparator());
+    Metrics.printed(printEvent, start, written);
+  }
+
+  /**
+   * Parses a positive count, or returns 0 if {@code text} is not one. A limit of 0 errors would
+   * leave the sink full from the start, and a full sink stops the scanner and parser.
+   */
+  private static int parsePositive(String text) {
+    try {
+      return Math.max(Integer.parseInt(text), 0);
+    } catch (NumberFormatException e) {
+      return 0;
     }
   }
 
-  private static void report(int line, String where, String message) {
-    System.out.println("[line " + line + "] Error" + where + ": " + message);
-    hadError = true;
+  /**
+   * The compilation cache is off unless {@code -Djlox.cache.dir} names a directory for it.
+   */
+  private static AstCache openCache() {
+    String dir = System.getProperty("jlox.cache.dir");
+    return dir == null ? null : new AstCache(Paths.get(dir), Charset.defaultCharset());
   }
 }
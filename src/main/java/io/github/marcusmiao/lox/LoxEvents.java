@@ -0,0 +1,54 @@
+package io.github.marcusmiao.lox;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder events for each phase of a run. They cost nothing unless a recording enables
+ * them, e.g. {@code -XX:StartFlightRecording:settings=profile}.
+ */
+final class LoxEvents {
+  private LoxEvents() {}
+
+  @Name("io.github.marcusmiao.lox.Scan")
+  @Label("Scan")
+  @Category("Lox")
+  @Description("Scanner.scanTokens()")
+  static final class Scan extends Event {
+    @Label("Source Characters")
+    int chars;
+
+    @Label("Tokens")
+    int tokens;
+
+    @Label("Errors")
+    int errors;
+  }
+
+  @Name("io.github.marcusmiao.lox.Parse")
+  @Label("Parse")
+  @Category("Lox")
+  @Description("Parser.parse()")
+  static final class Parse extends Event {
+    @Label("Nodes")
+    int nodes;
+
+    @Label("Maximum Nesting Depth")
+    int maxDepth;
+
+    @Label("Errors")
+    int errors;
+  }
+
+  @Name("io.github.marcusmiao.lox.Print")
+  @Label("Print")
+  @Category("Lox")
+  @Description("Printing the result of a run")
+  static final class Print extends Event {
+    @Label("Output Characters")
+    long chars;
+  }
+}
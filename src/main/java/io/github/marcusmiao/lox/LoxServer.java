@@ -0,0 +1,219 @@
+package io.github.marcusmiao.lox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps one warm JVM evaluating snippets for many clients.
+ *
+ * <p>The protocol is a sequence of frames in both directions. A request is a type byte, a
+ * big-endian {@code int} length and that many bytes of UTF-8 payload; a response is a status byte
+ * followed the same way by a length and payload.
+ *
+ * <ul>
+ *   <li>{@code 'E'} evaluates the payload as Lox source. The response is {@link #OK} with the
+ *       printed AST, or {@link #ERROR} with the diagnostics, one per line.</li>
+ *   <li>{@code 'S'} ignores the payload and answers with the server's latency statistics.</li>
+ * </ul>
+ *
+ * <p>Every connection is served on its own virtual thread. Every request borrows a pooled
+ * {@link FrontEnd}, whose symbols are cleared on release, and gets its own diagnostic sink, so no
+ * state is shared between requests. A {@link Budget}, {@link #DEFAULT_BUDGET} unless one is given,
+ * keeps any one request from monopolizing a core, the heap or the stack.
+ */
+final class LoxServer implements Closeable {
+  static final byte EVAL = 'E';
+  static final byte STATS = 'S';
+  static final byte OK = 0;
+  static final byte ERROR = 1;
+
+  static final int DEFAULT_PORT = 7777;
+  private static final int MAX_FRAME = 16 << 20;
+  // A char of source is at most 3 bytes of UTF-8; a surrogate pair is 4 bytes for 2 chars.
+  private static final int MAX_UTF8_BYTES_PER_CHAR = 3;
+  private static final int MAX_ERRORS = 20;
+  /** A megabyte of source, 256 levels of nesting and a second per request. */
+  static final Budget DEFAULT_BUDGET = new Budget(1 << 20, Integer.MAX_VALUE, Integer.MAX_VALUE,
+      256, 1000);
+
+  private final SocketAddress address;
+  private final Budget budget;
+  private final int maxFrame;
+  private final ServerSocketChannel channel;
+  private final ExecutorService executor = newThreadPerTaskExecutor();
+  private final LatencyHistogram latency = new LatencyHistogram();
+
+  LoxServer(SocketAddress address) throws IOException {
+    this(address, DEFAULT_BUDGET);
+  }
+
+  /** Every request is evaluated within {@code budget}. */
+  LoxServer(SocketAddress address, Budget budget) throws IOException {
+    this.budget = budget;
+    // Payloads are read whole before the budget is checked, so the frame limit follows from it.
+    this.maxFrame = (int) Math.min(MAX_FRAME,
+        (long) budget.sourceChars * MAX_UTF8_BYTES_PER_CHAR);
+    if (address instanceof UnixDomainSocketAddress) {
+      Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+      channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+    } else {
+      channel = ServerSocketChannel.open();
+    }
+    channel.bind(address);
+    this.address = channel.getLocalAddress();
+  }
+
+  /** Parses {@code unix:<path>}, {@code <port>} or {@code <host>:<port>}. */
+  static SocketAddress parseAddress(String spec) {
+    if (spec == null) {
+      return new InetSocketAddress(InetAddress.getLoopbackAddress(), DEFAULT_PORT);
+    }
+    if (spec.startsWith("unix:")) {
+      return UnixDomainSocketAddress.of(spec.substring("unix:".length()));
+    }
+    int colon = spec.lastIndexOf(':');
+    if (colon < 0) {
+      return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(spec));
+    }
+    return new InetSocketAddress(spec.substring(0, colon),
+        Integer.parseInt(spec.substring(colon + 1)));
+  }
+
+  SocketAddress address() {
+    return address;
+  }
+
+  LatencyHistogram latency() {
+    return latency;
+  }
+
+  /** Accepts connections until {@link #close()} is called. */
+  void serve() throws IOException {
+    try {
+      for (;;) {
+        SocketChannel client = channel.accept();
+        executor.execute(() -> handle(client));
+      }
+    } catch (ClosedChannelException e) {
+      // close() was called.
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+    executor.shutdownNow();
+    if (address instanceof UnixDomainSocketAddress) {
+      Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+    }
+  }
+
+  // ===============================================================================================
+
+  private void handle(SocketChannel client) {
+    try (client;
+         DataInputStream in = new DataInputStream(
+             new BufferedInputStream(Channels.newInputStream(client)));
+         DataOutputStream out = new DataOutputStream(
+             new BufferedOutputStream(Channels.newOutputStream(client)))) {
+      for (;;) {
+        int type;
+        try {
+          type = in.readUnsignedByte();
+        } catch (EOFException e) {
+          return;
+        }
+        int length = in.readInt();
+        if (length < 0 || length > maxFrame) {
+          respond(out, ERROR, "Frame length " + length + " out of range");
+          return;
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+
+        if (type == EVAL) {
+          long start = System.nanoTime();
+          DiagnosticSink.Collecting errors = new DiagnosticSink.Collecting(MAX_ERRORS);
+          String result = null;
+          String failure = null;
+          try {
+            result = evaluate(new String(payload, StandardCharsets.UTF_8), errors);
+          } catch (StackOverflowError | RuntimeException e) {
+            // Past what the budget guards against; answer rather than drop the connection.
+            failure = "Internal error: " + e;
+          }
+          latency.record(System.nanoTime() - start);
+          if (failure != null) {
+            respond(out, ERROR, failure);
+          } else if (errors.hadError()) {
+            respond(out, ERROR, errors.toString());
+          } else {
+            respond(out, OK, result);
+          }
+        } else if (type == STATS) {
+          respond(out, OK, latency.toString());
+        } else {
+          respond(out, ERROR, "Unknown request type " + type);
+        }
+      }
+    } catch (IOException e) {
+      // The client went away mid-frame; nothing to answer.
+    }
+  }
+
+  private String evaluate(String source, DiagnosticSink errors) {
+    FrontEnd frontEnd = FrontEnd.acquire();
+    try {
+      Expr expr = frontEnd.parse(source, errors, budget);
+      if (errors.hadError()) {
+        return null;
+      }
+      return new AstPrinter().print(expr);
+    } finally {
+      FrontEnd.release(frontEnd);
+    }
+  }
+
+  private static void respond(DataOutputStream out, byte status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    out.writeByte(status);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+    out.flush();
+  }
+
+  /**
+   * Virtual threads on Java 21 and later. The build targets 17, so the factory is looked up
+   * reflectively, and older runtimes fall back to a cached platform-thread pool.
+   */
+  private static ExecutorService newThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService) Executors.class
+          .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "lox-server");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+}
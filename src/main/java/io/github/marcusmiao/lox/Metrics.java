@@ -0,0 +1,161 @@
+package io.github.marcusmiao.lox;
+
+/**
+ * Cumulative per-phase statistics for the runs of this process.
+ *
+ * <p>Collection is off unless {@link #enable()} is called (the {@code --stats} flag does this).
+ * Phases report here once per run, never per token, so leaving the hooks in costs a couple of
+ * {@code System.nanoTime()} calls and a field read per phase.
+ */
+public final class Metrics {
+  private static volatile boolean enabled = false;
+
+  private static long runs;
+  private static long cacheHits;
+  private static long scanNanos;
+  private static long parseNanos;
+  private static long printNanos;
+  private static long chars;
+  private static long tokens;
+  private static long nodes;
+  private static int maxDepth;
+  private static long scanErrors;
+  private static long parseErrors;
+
+  private Metrics() {}
+
+  public static void enable() {
+    enabled = true;
+  }
+
+  public static void disable() {
+    enabled = false;
+  }
+
+  public static synchronized Snapshot snapshot() {
+    return new Snapshot(runs, cacheHits, scanNanos, parseNanos, printNanos, chars, tokens, nodes,
+        maxDepth, scanErrors, parseErrors);
+  }
+
+  public static synchronized void reset() {
+    runs = 0;
+    cacheHits = 0;
+    scanNanos = 0;
+    parseNanos = 0;
+    printNanos = 0;
+    chars = 0;
+    tokens = 0;
+    nodes = 0;
+    maxDepth = 0;
+    scanErrors = 0;
+    parseErrors = 0;
+  }
+
+  // ===============================================================================================
+
+  static void scanned(LoxEvents.Scan event, long startNanos, int chars, int tokens, int errors) {
+    long elapsed = System.nanoTime() - startNanos;
+    event.end();
+    if (event.shouldCommit()) {
+      event.chars = chars;
+      event.tokens = tokens;
+      event.errors = errors;
+      event.commit();
+    }
+    if (enabled) {
+      synchronized (Metrics.class) {
+        Metrics.runs++;
+        Metrics.scanNanos += elapsed;
+        Metrics.chars += chars;
+        Metrics.tokens += tokens;
+        Metrics.scanErrors += errors;
+      }
+    }
+  }
+
+  static void parsed(LoxEvents.Parse event, long startNanos, int nodes, int maxDepth,
+      int errors) {
+    long elapsed = System.nanoTime() - startNanos;
+    event.end();
+    if (event.shouldCommit()) {
+      event.nodes = nodes;
+      event.maxDepth = maxDepth;
+      event.errors = errors;
+      event.commit();
+    }
+    if (enabled) {
+      synchronized (Metrics.class) {
+        Metrics.parseNanos += elapsed;
+        Metrics.nodes += nodes;
+        Metrics.maxDepth = Math.max(Metrics.maxDepth, maxDepth);
+        Metrics.parseErrors += errors;
+      }
+    }
+  }
+
+  static void printed(LoxEvents.Print event, long startNanos, long chars) {
+    long elapsed = System.nanoTime() - startNanos;
+    event.end();
+    if (event.shouldCommit()) {
+      event.chars = chars;
+      event.commit();
+    }
+    if (enabled) {
+      synchronized (Metrics.class) {
+        Metrics.printNanos += elapsed;
+      }
+    }
+  }
+
+  static void cacheHit() {
+    if (enabled) {
+      synchronized (Metrics.class) {
+        Metrics.runs++;
+        Metrics.cacheHits++;
+      }
+    }
+  }
+
+  /** An immutable copy of the counters at one point in time. */
+  public static final class Snapshot {
+    public final long runs;
+    public final long cacheHits;
+    public final long scanNanos;
+    public final long parseNanos;
+    public final long printNanos;
+    public final long chars;
+    public final long tokens;
+    public final long nodes;
+    public final int maxDepth;
+    public final long scanErrors;
+    public final long parseErrors;
+
+    Snapshot(long runs, long cacheHits, long scanNanos, long parseNanos, long printNanos,
+        long chars, long tokens, long nodes, int maxDepth, long scanErrors, long parseErrors) {
+      this.runs = runs;
+      this.cacheHits = cacheHits;
+      this.scanNanos = scanNanos;
+      this.parseNanos = parseNanos;
+      this.printNanos = printNanos;
+      this.chars = chars;
+      this.tokens = tokens;
+      this.nodes = nodes;
+      this.maxDepth = maxDepth;
+      this.scanErrors = scanErrors;
+      this.parseErrors = parseErrors;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "runs: %d (cache hits: %d)%n"
+              + "scan:  %10.3f ms  %d chars, %d tokens, %d errors%n"
+              + "parse: %10.3f ms  %d nodes, max depth %d, %d errors%n"
+              + "print: %10.3f ms",
+          runs, cacheHits,
+          scanNanos / 1e6, chars, tokens, scanErrors,
+          parseNanos / 1e6, nodes, maxDepth, parseErrors,
+          printNanos / 1e6);
+    }
+  }
+}
@@ -6,21 +6,87 @@ import java.util.List;
 
 class Parser {
   private static class ParseError extends RuntimeException {}
-  private final List<Token> tokens;
+  private List<Token> tokens;
+  private DiagnosticSink sink;
+  private Budget.Meter meter;
   private int current = 0;
+  private boolean exhausted = false;
+
+  private int nodes = 0;
+  private int depth = 0;
+  private int maxDepth = 0;
 
   Parser(List<Token> tokens) {
+    this(tokens, Lox.console);
+  }
+
+  Parser(List<Token> tokens, DiagnosticSink sink) {
+    reset(tokens, sink);
+  }
+
+  /** Prepares this parser for a new token list. */
+  void reset(List<Token> tokens, DiagnosticSink sink) {
+    reset(tokens, sink, Budget.UNLIMITED.meter());
+  }
+
+  void reset(List<Token> tokens, DiagnosticSink sink, Budget.Meter meter) {
     this.tokens = tokens;
+    this.sink = sink;
+    this.meter = meter;
+    current = 0;
+    exhausted = false;
+    nodes = 0;
+    depth = 0;
+    maxDepth = 0;
   }
 
   Expr parse() {
     try {
       return expression();
     } catch (ParseError e) {
+      recover();
       return null;
     }
   }
 
+  /** Like {@link #parse()}, but tokens left over after the expression are an error. */
+  Expr parseComplete() {
+    Expr expr = parse();
+    if (expr != null && !isAtEnd()) {
+      error(peek(), "Expect end of expression.");
+      return null;
+    }
+    return expr;
+  }
+
+  /**
+   * After an error, skips to the next statement boundary and keeps parsing from there so that one
+   * run reports every error it can, until the input ends, the sink is full or the budget is spent.
+   */
+  private void recover() {
+    while (!sink.isFull() && !exhausted && !isAtEnd()) {
+      synchronize();
+      if (isAtEnd()) {
+        return;
+      }
+      // The error unwound past the depth-- of every open group; each retry starts at the top.
+      depth = 0;
+      try {
+        expression();
+      } catch (ParseError e) {
+        // Reported; synchronize again.
+      }
+    }
+  }
+
+  int nodeCount() {
+    return nodes;
+  }
+
+  int maxDepth() {
+    return maxDepth;
+  }
+
   private Expr expression() {
     return equality();
   }
@@ -31,16 +97,18 @@ class Parser {
       Token operator = previous();
       Expr right = comparison();
       expr = new Expr.Binary(expr, operator, right);
+      nodes++;
     }
     return expr;
   }
 
   private Expr comparison() {
     Expr expr = term();
-    while (match(GREATER, GREATER_EQUAL, LESS, LESS_EQUAL)) {
+    while (match(GREATER, GREATER_EQUAL) || match(LESS, LESS_EQUAL)) {
       Token operator = previous();
       Expr right = term();
       expr = new Expr.Binary(expr, operator, right);
+      nodes++;
     }
     return expr;
   }
@@ -51,6 +119,7 @@ class Parser {
       Token operator = previous();
       Expr right = factor();
       expr = new Expr.Binary(expr, operator, right);
+      nodes++;
     }
     return expr;
   }
@@ -61,6 +130,7 @@ class Parser {
       Token operator = previous();
       Expr right = unary();
       expr = new Expr.Binary(expr, operator, right);
+      nodes++;
     }
     return expr;
   }
@@ -68,13 +138,23 @@ class Parser {
   private Expr unary() {
     if (match(BANG, MINUS)) {
       Token operator = previous();
+      enter();
       Expr right = unary();
+      depth--;
+      nodes++;
       return new Expr.Unary(operator, right);
     }
     return primary();
   }
 
   private Expr primary() {
+    // Checked once per leaf; the inner nodes above the leaves are bounded by them and the tokens.
+    if (++nodes > meter.budget.nodes) {
+      throw exhausted(peek(), "Exceeded the budget of " + meter.budget.nodes + " nodes");
+    }
+    if (!meter.inTime()) {
+      throw exhausted(peek(), "Exceeded the time budget of " + meter.budget.millis + " ms");
+    }
     if (match(FALSE)) {
       return new Expr.Literal(false);
     }
@@ -88,7 +168,9 @@ class Parser {
       return new Expr.Literal(previous().literal);
     }
     if (match(LEFT_PAREN)) {
+      enter();
       Expr expr = expression();
+      depth--;
       consume(RIGHT_PAREN, "Expect ')' after expression");
       return new Expr.Grouping(expr);
     }
@@ -97,16 +179,35 @@ class Parser {
 
   // ===============================================================================================
 
-  private boolean match(TokenType... types) {
-    for (TokenType type : types) {
-      if (check(type)) {
-        advance();
-        return true;
+  private void enter() {
+    if (++depth > maxDepth) {
+      maxDepth = depth;
+      // Checked before recursing further, so deep input fails here rather than with a
+      // StackOverflowError.
+      if (depth > meter.budget.depth) {
+        throw exhausted(previous(), "Exceeded the nesting budget of " + meter.budget.depth);
       }
     }
+  }
+
+  private ParseError exhausted(Token token, String message) {
+    exhausted = true;
+    return error(token, message);
+  }
+
+  // Fixed arities rather than varargs, so the hot loops never allocate an array per token.
+  private boolean match(TokenType type) {
+    if (check(type)) {
+      advance();
+      return true;
+    }
     return false;
   }
 
+  private boolean match(TokenType first, TokenType second) {
+    return match(first) || match(second);
+  }
+
   private boolean check(TokenType type) {
     if (isAtEnd()) {
       return false;
@@ -141,13 +242,18 @@ class Parser {
   }
 
   ParseError error(Token token, String message) {
-    Lox.error(token, message);
+    String where = token.type == EOF ? " at end" : " at '" + token.lexeme + "'";
+    sink.report(new Diagnostic(Diagnostic.Severity.ERROR, token.offset, token.line, where, message,
+        Diagnostic.Phase.PARSE));
     return new ParseError();
   }
 
   private void synchronize() {
     advance();
     while (!isAtEnd()) {
+      if (previous().type == SEMICOLON) {
+        return;
+      }
       switch (peek().type) {
         case CLASS:
         case FUN:
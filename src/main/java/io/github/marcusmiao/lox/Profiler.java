@@ -0,0 +1,270 @@
+package io.github.marcusmiao.lox;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Counts how often every part of a tree is visited, keyed by source site: the kind of node, its
+ * operator and its line. Literals and groups have no token of their own and take the line of the
+ * nearest enclosing operator.
+ *
+ * <p>Every visit is counted exactly; only one in {@code sampleEvery} is also timed, so the clock is
+ * rarely read. Visits are additionally attributed to their path from the root, which
+ * {@link #writeCollapsed} exports in the folded-stack format of flame-graph tools. Repeated frames
+ * (a chain of {@code +}) fold into one, and paths stop growing at {@link #MAX_PATH_DEPTH}.
+ *
+ * <p>Sites and paths are interned in open-addressing tables of primitive arrays, so a visit costs
+ * two probes and a few increments and allocates nothing once the tables are warm. Single-threaded.
+ */
+final class Profiler {
+  static final int MAX_PATH_DEPTH = 64;
+
+  private static final int LITERAL = 0;
+  private static final int GROUPING = 1;
+  private static final int UNARY = 2;
+  private static final int BINARY = 3;
+  private static final String[] KIND_NAMES = {"literal", "group", "unary", "binary"};
+  private static final TokenType[] TOKEN_TYPES = TokenType.values();
+  private static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+  private final int sampleEvery;
+  private int countdown;
+
+  // Sites, by id.
+  private final Index sites = new Index();
+  private long[] siteKeys = new long[64];
+  private long[] siteCounts = new long[64];
+  private long[] siteSamples = new long[64];
+  private long[] siteNanos = new long[64];
+
+  // Paths from the root, by id; each is its parent path plus one site.
+  private final Index paths = new Index();
+  private int[] pathParents = new int[64];
+  private int[] pathSites = new int[64];
+  private int[] pathDepths = new int[64];
+  private long[] pathCounts = new long[64];
+
+  // The nodes being visited, innermost last.
+  private int depth = 0;
+  private int[] frameSites = new int[64];
+  private int[] framePaths = new int[64];
+  private int[] frameLines = new int[64];
+  private long[] frameStarts = new long[64];
+
+  Profiler(int sampleEvery) {
+    if (sampleEvery < 1) {
+      throw new IllegalArgumentException("sampleEvery must be positive: " + sampleEvery);
+    }
+    this.sampleEvery = sampleEvery;
+    this.countdown = sampleEvery;
+  }
+
+  /** Starts a visit of {@code expr}. Every call must be matched by {@link #exit()}. */
+  void enter(Expr expr) {
+    int line = depth > 0 ? frameLines[depth - 1] : 0;
+    int kind;
+    int type = 0;
+    if (expr instanceof Expr.Binary) {
+      Token operator = ((Expr.Binary) expr).operator;
+      kind = BINARY;
+      type = operator.type.ordinal();
+      line = operator.line;
+    } else if (expr instanceof Expr.Unary) {
+      Token operator = ((Expr.Unary) expr).operator;
+      kind = UNARY;
+      type = operator.type.ordinal();
+      line = operator.line;
+    } else if (expr instanceof Expr.Grouping) {
+      kind = GROUPING;
+    } else {
+      kind = LITERAL;
+    }
+
+    int site = site(((long) kind << 40) | ((long) type << 32) | (line & 0xffffffffL));
+    siteCounts[site]++;
+    int parent = depth > 0 ? framePaths[depth - 1] : -1;
+    int path = path(parent, site);
+    pathCounts[path]++;
+
+    if (depth == frameSites.length) {
+      int capacity = depth * 2;
+      frameSites = Arrays.copyOf(frameSites, capacity);
+      framePaths = Arrays.copyOf(framePaths, capacity);
+      frameLines = Arrays.copyOf(frameLines, capacity);
+      frameStarts = Arrays.copyOf(frameStarts, capacity);
+    }
+    frameSites[depth] = site;
+    framePaths[depth] = path;
+    frameLines[depth] = line;
+    if (--countdown == 0) {
+      countdown = sampleEvery;
+      frameStarts[depth] = System.nanoTime();
+    } else {
+      frameStarts[depth] = NOT_SAMPLED;
+    }
+    depth++;
+  }
+
+  /** Ends the innermost visit. */
+  void exit() {
+    depth--;
+    long start = frameStarts[depth];
+    if (start != NOT_SAMPLED) {
+      int site = frameSites[depth];
+      siteSamples[site]++;
+      siteNanos[site] += System.nanoTime() - start;
+    }
+  }
+
+  /**
+   * Writes the {@code n} most visited sites with their estimated total time, which is the mean of
+   * the timed visits, including children, times the count.
+   */
+  void report(Appendable out, int n) throws IOException {
+    List<Integer> order = new ArrayList<>(sites.size());
+    for (int site = 0; site < sites.size(); site++) {
+      order.add(site);
+    }
+    order.sort((a, b) -> Long.compare(siteCounts[b], siteCounts[a]));
+    out.append(String.format("%12s %12s  %s%n", "count", "est. ms", "site"));
+    for (int i = 0; i < Math.min(n, order.size()); i++) {
+      int site = order.get(i);
+      String millis = siteSamples[site] == 0
+          ? "-"
+          : String.format("%.3f", (double) siteNanos[site] / siteSamples[site]
+              * siteCounts[site] / 1e6);
+      out.append(String.format("%12d %12s  %s%n", siteCounts[site], millis, label(site)));
+    }
+  }
+
+  /**
+   * Writes one {@code frame;frame;frame count} line per path, where the count is the number of
+   * visits that ended on that path. Every node visit costs about the same, so widths in the
+   * resulting flame graph are proportional to time.
+   */
+  void writeCollapsed(Appendable out) throws IOException {
+    String[] labels = new String[sites.size()];
+    StringBuilder line = new StringBuilder();
+    int[] chain = new int[MAX_PATH_DEPTH];
+    for (int path = 0; path < paths.size(); path++) {
+      if (pathCounts[path] == 0) {
+        continue;
+      }
+      int length = 0;
+      for (int p = path; p >= 0; p = pathParents[p]) {
+        chain[length++] = pathSites[p];
+      }
+      line.setLength(0);
+      for (int i = length - 1; i >= 0; i--) {
+        int site = chain[i];
+        if (labels[site] == null) {
+          labels[site] = label(site);
+        }
+        line.append(labels[site]).append(i > 0 ? ';' : ' ');
+      }
+      out.append(line).append(Long.toString(pathCounts[path])).append('\n');
+    }
+  }
+
+  // ===============================================================================================
+
+  private int site(long key) {
+    int site = sites.intern(key);
+    if (site == siteKeys.length) {
+      int capacity = site * 2;
+      siteKeys = Arrays.copyOf(siteKeys, capacity);
+      siteCounts = Arrays.copyOf(siteCounts, capacity);
+      siteSamples = Arrays.copyOf(siteSamples, capacity);
+      siteNanos = Arrays.copyOf(siteNanos, capacity);
+    }
+    siteKeys[site] = key;
+    return site;
+  }
+
+  private int path(int parent, int site) {
+    if (parent >= 0 && (pathSites[parent] == site || pathDepths[parent] == MAX_PATH_DEPTH)) {
+      return parent;
+    }
+    int path = paths.intern(((long) parent << 32) | site);
+    if (path == pathParents.length) {
+      int capacity = path * 2;
+      pathParents = Arrays.copyOf(pathParents, capacity);
+      pathSites = Arrays.copyOf(pathSites, capacity);
+      pathDepths = Arrays.copyOf(pathDepths, capacity);
+      pathCounts = Arrays.copyOf(pathCounts, capacity);
+    }
+    pathParents[path] = parent;
+    pathSites[path] = site;
+    pathDepths[path] = parent < 0 ? 1 : pathDepths[parent] + 1;
+    return path;
+  }
+
+  /** For example {@code binary + @3}. Never contains {@code ;}. */
+  private String label(int site) {
+    long key = siteKeys[site];
+    int kind = (int) (key >>> 40);
+    int line = (int) key;
+    StringBuilder sb = new StringBuilder(KIND_NAMES[kind]);
+    if (kind == BINARY || kind == UNARY) {
+      sb.append(' ').append(Scanner.lexeme(TOKEN_TYPES[(int) (key >>> 32) & 0xff]));
+    }
+    return sb.append(" @").append(line).toString();
+  }
+
+  /** Assigns dense ids, in order of first appearance, to {@code long} keys. */
+  private static final class Index {
+    private long[] keys = new long[128];
+    private int[] ids = new int[128];
+    private int size = 0;
+
+    Index() {
+      Arrays.fill(ids, -1);
+    }
+
+    int size() {
+      return size;
+    }
+
+    int intern(long key) {
+      int mask = keys.length - 1;
+      int slot = hash(key) & mask;
+      for (; ids[slot] >= 0; slot = (slot + 1) & mask) {
+        if (keys[slot] == key) {
+          return ids[slot];
+        }
+      }
+      keys[slot] = key;
+      ids[slot] = size;
+      if (++size * 2 > keys.length) {
+        grow();
+      }
+      return size - 1;
+    }
+
+    private void grow() {
+      long[] oldKeys = keys;
+      int[] oldIds = ids;
+      keys = new long[oldKeys.length * 2];
+      ids = new int[oldIds.length * 2];
+      Arrays.fill(ids, -1);
+      int mask = keys.length - 1;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldIds[i] >= 0) {
+          int slot = hash(oldKeys[i]) & mask;
+          while (ids[slot] >= 0) {
+            slot = (slot + 1) & mask;
+          }
+          keys[slot] = oldKeys[i];
+          ids[slot] = oldIds[i];
+        }
+      }
+    }
+
+    private static int hash(long key) {
+      long h = key * 0x9e3779b97f4a7c15L;
+      return (int) (h ^ (h >>> 32));
+    }
+  }
+}
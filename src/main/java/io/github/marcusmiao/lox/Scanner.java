@@ -27,31 +27,131 @@ class Scanner {
     KEY_WORDS.put("while", TokenType.WHILE);
   }
 
-  private final String source;
-  private final List<Token> tokens = new ArrayList<>();
+  // Operators and punctuation always spell the same lexeme, so their tokens share one String.
+  private static final String[] FIXED_LEXEMES = new String[TokenType.values().length];
+  static {
+    FIXED_LEXEMES[TokenType.LEFT_PAREN.ordinal()] = "(";
+    FIXED_LEXEMES[TokenType.RIGHT_PAREN.ordinal()] = ")";
+    FIXED_LEXEMES[TokenType.LEFT_BRACE.ordinal()] = "{";
+    FIXED_LEXEMES[TokenType.RIGHT_BRACE.ordinal()] = "}";
+    FIXED_LEXEMES[TokenType.COMMA.ordinal()] = ",";
+    FIXED_LEXEMES[TokenType.DOT.ordinal()] = ".";
+    FIXED_LEXEMES[TokenType.MINUS.ordinal()] = "-";
+    FIXED_LEXEMES[TokenType.PLUS.ordinal()] = "+";
+    FIXED_LEXEMES[TokenType.SEMICOLON.ordinal()] = ";";
+    FIXED_LEXEMES[TokenType.SLASH.ordinal()] = "/";
+    FIXED_LEXEMES[TokenType.STAR.ordinal()] = "*";
+    FIXED_LEXEMES[TokenType.BANG.ordinal()] = "!";
+    FIXED_LEXEMES[TokenType.BANG_EQUAL.ordinal()] = "!=";
+    FIXED_LEXEMES[TokenType.EQUAL.ordinal()] = "=";
+    FIXED_LEXEMES[TokenType.EQUAL_EQUAL.ordinal()] = "==";
+    FIXED_LEXEMES[TokenType.GREATER.ordinal()] = ">";
+    FIXED_LEXEMES[TokenType.GREATER_EQUAL.ordinal()] = ">=";
+    FIXED_LEXEMES[TokenType.LESS.ordinal()] = "<";
+    FIXED_LEXEMES[TokenType.LESS_EQUAL.ordinal()] = "<=";
+  }
+
+  /** The lexeme every token of an operator or punctuation {@code type} has, or null. */
+  static String lexeme(TokenType type) {
+    return FIXED_LEXEMES[type.ordinal()];
+  }
+
+  private final SymbolTable symbols;
+  private List<Token> tokens = new ArrayList<>();
+  private DiagnosticSink sink;
+  private Budget.Meter meter;
+
+  // The source is copied into a buffer that is kept, and only grown, across resets.
+  private char[] source = new char[0];
+  private int length = 0;
 
   private int start = 0;
   private int current = 0;
   private int line = 1;
+  // Where the source begins in a larger input, so that tokens carry offsets into that input.
+  private long base = 0;
 
   Scanner(String source) {
-    this.source = source;
+    this(source, new SymbolTable(), Lox.console);
+  }
+
+  Scanner(String source, SymbolTable symbols, DiagnosticSink sink) {
+    this.symbols = symbols;
+    reset(source, sink);
+  }
+
+  /**
+   * Prepares this scanner for a new source while keeping its buffers. The list returned by the
+   * previous {@link #scanTokens()} is reused, so callers must be done with it.
+   */
+  void reset(String source, DiagnosticSink sink) {
+    reset(source, sink, Budget.UNLIMITED.meter());
+  }
+
+  void reset(String source, DiagnosticSink sink, Budget.Meter meter) {
+    reset(source, sink, meter, 1, 0);
+  }
+
+  /** Scans {@code source} as the part of a larger input at {@code line} and {@code offset}. */
+  void reset(String source, DiagnosticSink sink, Budget.Meter meter, int line, long offset) {
+    this.sink = sink;
+    this.meter = meter;
+    if (source.length() > this.source.length) {
+      this.source = new char[Math.max(source.length(), this.source.length * 2)];
+    }
+    source.getChars(0, source.length(), this.source, 0);
+    length = source.length();
+    tokens.clear();
+    start = 0;
+    current = 0;
+    this.line = line;
+    base = offset;
+  }
+
+  /**
+   * Lets go of the last tokens and the sink, and drops the source buffer and the token list if
+   * either takes more than {@code maxBytes}.
+   */
+  void trim(int maxBytes) {
+    sink = Lox.console;
+    meter = null;
+    if ((long) source.length * Character.BYTES > maxBytes) {
+      source = new char[0];
+    }
+    length = 0;
+    // Counting a reference as 8 bytes, the worst case.
+    if ((long) tokens.size() * Long.BYTES > maxBytes) {
+      tokens = new ArrayList<>();
+    } else {
+      tokens.clear();
+    }
   }
 
   List<Token> scanTokens() {
+    Budget budget = meter.budget;
     while (!isAtEnd()) {
       start = current;
       scanToken();
-      if (Lox.hadError) {
-        return tokens;
+      if (sink.isFull()) {
+        break;
+      }
+      // A single token, even a long comment, is bounded by the source budget, so checking
+      // between tokens is enough.
+      if (tokens.size() > budget.tokens) {
+        error("Exceeded the budget of " + budget.tokens + " tokens");
+        break;
+      }
+      if (!meter.inTime()) {
+        error("Exceeded the time budget of " + budget.millis + " ms");
+        break;
       }
     }
-    tokens.add(new Token(TokenType.EOF, "", null, line));
+    tokens.add(new Token(TokenType.EOF, "", null, line, base + current, -1));
     return tokens;
   }
 
   private boolean isAtEnd() {
-    return current >= source.length();
+    return current >= length;
   }
 
   private void scanToken() {
@@ -128,7 +228,7 @@ class Scanner {
             advance();
           }
           if (nestLevel != 0) {
-            Lox.error(line, "Multiline comment doesn't terminate properly");
+            error("Multiline comment doesn't terminate properly");
           }
         } else {
           addToken(TokenType.SLASH);
@@ -150,30 +250,42 @@ class Scanner {
         } else if (isAlpha(c)) {
           identifier();
         } else {
-          Lox.error(line, "Unexpected character '" + c + "'");
+          error("Unexpected character '" + c + "'");
         }
         break;
     }
   }
 
   private char advance() {
-    return source.charAt(current++);
+    return source[current++];
   }
 
   private void addToken(TokenType type) {
-    addToken(type, null);
+    String lexeme = FIXED_LEXEMES[type.ordinal()];
+    if (lexeme == null) {
+      lexeme = text(start, current);
+    }
+    tokens.add(new Token(type, lexeme, null, line, base + start, -1));
+  }
+
+  private void addToken(TokenType type, String text, Object literal) {
+    tokens.add(new Token(type, text, literal, line, base + start, -1));
   }
 
-  private void addToken(TokenType type, Object literal) {
-    String text = source.substring(start, current);
-    tokens.add(new Token(type, text, literal, line));
+  private void error(String message) {
+    sink.report(new Diagnostic(Diagnostic.Severity.ERROR, base + start, line, "", message,
+        Diagnostic.Phase.SCAN));
+  }
+
+  private String text(int from, int to) {
+    return new String(source, from, to - from);
   }
 
   private boolean match(char expected) {
     if (isAtEnd()) {
       return false;
     }
-    if (source.charAt(current) != expected) {
+    if (source[current] != expected) {
       return false;
     }
     current++;
@@ -184,14 +296,14 @@ class Scanner {
     if (isAtEnd()) {
       return '\0';
     }
-    return source.charAt(current);
+    return source[current];
   }
 
   private char peekNext() {
-    if (current + 1 >= source.length()) {
+    if (current + 1 >= length) {
       return '\0';
     }
-    return source.charAt(current + 1);
+    return source[current + 1];
   }
 
   private void string() {
@@ -203,15 +315,15 @@ class Scanner {
     }
 
     if (isAtEnd()) {
-      Lox.error(line, "Unexpected end of string");
+      error("Unexpected end of string");
       return;
     }
 
     // Consumes the closing double quotation mark
     advance();
 
-    String value = source.substring(start + 1, current - 1);
-    addToken(TokenType.STRING, value);
+    String value = text(start + 1, current - 1);
+    addToken(TokenType.STRING, text(start, current), value);
   }
 
   private void number() {
@@ -223,15 +335,23 @@ class Scanner {
         advance();
       } while (isDigit(peek()));
     }
-    addToken(TokenType.NUMBER, Double.parseDouble(source.substring(start, current)));
+    String text = text(start, current);
+    addToken(TokenType.NUMBER, text, Double.parseDouble(text));
   }
 
   private void identifier() {
     while (isAlphaNumeric(peek())) {
       advance();
     }
-    String text = source.substring(start, current);
-    addToken(KEY_WORDS.getOrDefault(text, TokenType.IDENTIFIER));
+    // Every occurrence of a name shares the interned lexeme, and only identifiers carry a symbol.
+    int symbol = symbols.intern(source, start, current);
+    TokenType keyword = symbols.keyword(symbol);
+    if (keyword != null) {
+      tokens.add(new Token(keyword, symbols.name(symbol), null, line, base + start, -1));
+    } else {
+      tokens.add(
+          new Token(TokenType.IDENTIFIER, symbols.name(symbol), null, line, base + start, symbol));
+    }
   }
 
   private boolean isDigit(char c) {
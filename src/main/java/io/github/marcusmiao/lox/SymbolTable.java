@@ -0,0 +1,158 @@
+package io.github.marcusmiao.lox;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Interns identifier names into dense {@code int} symbols for the lifetime of a session.
+ *
+ * <p>Lookups hash and compare the characters of the source range in place, so a name is copied
+ * into a {@code String} only the first time it is seen. Every keyword is interned up front, which
+ * lets the scanner classify a word with the same single lookup.
+ *
+ * <p>Names may come from untrusted input, so the hash is seeded per table: without the seed,
+ * nobody can craft a set of names that collide and turn every lookup into a linear scan.
+ */
+final class SymbolTable {
+  private static final int INITIAL_CAPACITY = 64;
+
+  private String[] names = new String[INITIAL_CAPACITY];
+  private int[] hashes = new int[INITIAL_CAPACITY];
+  private TokenType[] keywords = new TokenType[INITIAL_CAPACITY];
+  private int size = 0;
+  private final int keywordCount;
+  private final int seed = ThreadLocalRandom.current().nextInt();
+
+  // Open addressing over symbol + 1, so that 0 marks an empty slot.
+  private int[] slots = new int[INITIAL_CAPACITY * 2];
+
+  SymbolTable() {
+    for (Map.Entry<String, TokenType> keyword : Scanner.KEY_WORDS.entrySet()) {
+      char[] name = keyword.getKey().toCharArray();
+      keywords[intern(name, 0, name.length)] = keyword.getValue();
+    }
+    keywordCount = size;
+  }
+
+  /** Returns the symbol for {@code source[start, end)}, adding it if it is new. */
+  int intern(char[] source, int start, int end) {
+    int hash = hash(source, start, end);
+    int mask = slots.length - 1;
+    for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+      int entry = slots[slot];
+      if (entry == 0) {
+        int symbol = add(new String(source, start, end - start), hash);
+        slots[slot] = symbol + 1;
+        if (size * 2 > slots.length) {
+          rehash();
+        }
+        return symbol;
+      }
+      int symbol = entry - 1;
+      if (hashes[symbol] == hash && matches(names[symbol], source, start, end)) {
+        return symbol;
+      }
+    }
+  }
+
+  /** Reverse mapping, for diagnostics and printing. */
+  String name(int symbol) {
+    return names[symbol];
+  }
+
+  /** The keyword this symbol spells, or null for a plain identifier. */
+  TokenType keyword(int symbol) {
+    return keywords[symbol];
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Forgets every symbol except the keywords, keeping the allocated capacity. */
+  void clear() {
+    if (size == keywordCount) {
+      return;
+    }
+    Arrays.fill(names, keywordCount, size, null);
+    size = keywordCount;
+    rehash();
+  }
+
+  /** Like {@link #clear()}, but also shrinks tables that take more than {@code maxBytes}. */
+  void trim(int maxBytes) {
+    clear();
+    // Counting a reference as 8 bytes, the worst case.
+    if ((long) slots.length * Integer.BYTES <= maxBytes
+        && (long) names.length * Long.BYTES <= maxBytes) {
+      return;
+    }
+    int capacity = INITIAL_CAPACITY;
+    while (capacity < keywordCount) {
+      capacity *= 2;
+    }
+    names = Arrays.copyOf(names, capacity);
+    hashes = Arrays.copyOf(hashes, capacity);
+    keywords = Arrays.copyOf(keywords, capacity);
+    slots = new int[capacity * 2];
+    rehash();
+  }
+
+  // ===============================================================================================
+
+  private int add(String name, int hash) {
+    if (size == names.length) {
+      names = Arrays.copyOf(names, size * 2);
+      hashes = Arrays.copyOf(hashes, size * 2);
+      keywords = Arrays.copyOf(keywords, size * 2);
+    }
+    names[size] = name;
+    hashes[size] = hash;
+    return size++;
+  }
+
+  private void rehash() {
+    if (size * 2 > slots.length) {
+      slots = new int[slots.length * 2];
+    } else {
+      Arrays.fill(slots, 0);
+    }
+    int mask = slots.length - 1;
+    for (int symbol = 0; symbol < size; symbol++) {
+      int slot = mix(hashes[symbol]) & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = symbol + 1;
+    }
+  }
+
+  /**
+   * Unlike {@code 31 * h + c}, where equal-length blocks such as {@code Aa} and {@code BB} collide
+   * whatever the starting value, xor-then-multiply lets the seed decide which names collide.
+   */
+  int hash(char[] source, int start, int end) {
+    int hash = seed;
+    for (int i = start; i < end; i++) {
+      hash = (hash ^ source[i]) * 0x9e3779b1;
+    }
+    return hash;
+  }
+
+  private static boolean matches(String name, char[] source, int start, int end) {
+    if (name.length() != end - start) {
+      return false;
+    }
+    for (int i = 0; i < name.length(); i++) {
+      if (name.charAt(i) != source[start + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int mix(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+}
@@ -5,12 +5,22 @@ class Token {
   public final String lexeme;
   public final Object literal;
   public final int line;
+  /** The character offset of the lexeme in the source, or -1 for synthesized tokens. */
+  public final long offset;
+  /** The {@link SymbolTable} symbol of an identifier, or -1 for every other token. */
+  public final int symbol;
 
   public Token(TokenType type, String lexeme, Object literal, int line) {
+    this(type, lexeme, literal, line, -1, -1);
+  }
+
+  public Token(TokenType type, String lexeme, Object literal, int line, long offset, int symbol) {
     this.type = type;
     this.lexeme = lexeme;
     this.literal = literal;
     this.line = line;
+    this.offset = offset;
+    this.symbol = symbol;
   }
 
   @Override
@@ -20,6 +30,7 @@ class Token {
         ", lexeme='" + lexeme + '\'' +
         ", literal=" + literal +
         ", line=" + line +
+        (symbol >= 0 ? ", symbol=" + symbol : "") +
         '}';
   }
 }
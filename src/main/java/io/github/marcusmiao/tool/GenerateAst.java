@@ -9,21 +9,33 @@ import java.util.List;
 public class GenerateAst {
 
   public static void main(String[] args) throws IOException {
-    if (args.length != 1) {
-      System.err.println("Usage: generate_ast <output directory>");
+    boolean records = args.length > 0 && args[0].equals("--records");
+    int first = records ? 1 : 0;
+    if (args.length - first < 1 || args.length - first > 2) {
+      System.err.println("Usage: generate_ast [--records] <output directory> [base name]");
       System.exit(64);
     }
-    String outputDirectory = args[0];
-    defineAst(outputDirectory, "Expr", Arrays.asList(
-        "Binary   : Expr left, Token operator, Expr right",
-        "Grouping : Expr expression",
+    String outputDirectory = args[first];
+    String baseName = args.length - first == 2 ? args[first + 1] : "Expr";
+    defineAst(outputDirectory, baseName, Arrays.asList(
+        "Binary   : " + baseName + " left, Token operator, " + baseName + " right",
+        "Grouping : " + baseName + " expression",
         "Literal  : Object value",
-        "Unary    : Token operator, Expr right"
-    ));
+        "Unary    : Token operator, " + baseName + " right"
+    ), records);
   }
 
-  private static void defineAst(String outputDirectory, String baseName, List<String> types)
-      throws IOException {
+  /**
+   * Writes {@code baseName}.java. By default the base is an abstract class with one static
+   * subclass per type; with {@code records} it is a sealed interface with one record per type, so
+   * consumers can also dispatch with exhaustive pattern matching instead of the visitor.
+   *
+   * <p>Record components are private fields, so the two outputs are not source compatible: code
+   * that reads {@code expr.left} must switch to the accessor {@code expr.left()}. The visitor
+   * interface and {@code accept} are the same in both.
+   */
+  private static void defineAst(String outputDirectory, String baseName, List<String> types,
+      boolean records) throws IOException {
     String path = outputDirectory + "/" + baseName + ".java";
     File file = new File(path);
     if (file.exists()) {
@@ -39,18 +51,30 @@ public class GenerateAst {
     writer.println();
     writer.println("import java.util.List;");
     writer.println();
-    writer.println("abstract class " + baseName + " {");
+    if (records) {
+      writer.println("sealed interface " + baseName + " {");
+    } else {
+      writer.println("abstract class " + baseName + " {");
+    }
 
     defineVisitor(writer, baseName, types);
 
     for (String type : types) {
       String className = type.split(":")[0].trim();
       String fields = type.split(":")[1].trim();
-      defineType(writer, baseName, className, fields);
+      if (records) {
+        defineRecord(writer, baseName, className, fields);
+      } else {
+        defineType(writer, baseName, className, fields);
+      }
     }
 
     writer.println();
-    writer.println("  abstract <R> R accept(Visitor<R> visitor);");
+    if (records) {
+      writer.println("  <R> R accept(Visitor<R> visitor);");
+    } else {
+      writer.println("  abstract <R> R accept(Visitor<R> visitor);");
+    }
 
     writer.println("}");
     writer.close();
@@ -80,6 +104,17 @@ public class GenerateAst {
     writer.println("  }");
   }
 
+  /** Fields become record components, read through accessors rather than field access. */
+  private static void defineRecord(PrintWriter writer, String baseName, String className,
+      String fieldList) {
+    writer.println("  record " + className + "(" + fieldList + ") implements " + baseName + " {");
+    writer.println("    @Override");
+    writer.println("    public <R> R accept(Visitor<R> visitor) {");
+    writer.println("        return visitor.visit" + className + baseName + "(this);");
+    writer.println("    }");
+    writer.println("  }");
+  }
+
   private static void defineVisitor(PrintWriter writer, String baseName, List<String> types) {
     writer.println("  interface Visitor<R> {");
     for (String type : types) {
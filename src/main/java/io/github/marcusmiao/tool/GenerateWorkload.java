@@ -0,0 +1,349 @@
+package io.github.marcusmiao.tool;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+/**
+ * Emits random Lox expressions of a controlled size and shape. Output is written as it is
+ * generated, so arbitrarily large files need only constant memory.
+ *
+ * <p>With the default options the output is one long expression of number, string and keyword
+ * literals that the parser accepts. Lowering {@code --literal-density} mixes in identifiers and
+ * raising {@code --error-rate} injects scanner and parser errors. With {@code --separator} the
+ * output is instead a sequence of expressions of about {@code --expression-tokens} tokens each, for
+ * {@code jlox --stream}.
+ */
+public class GenerateWorkload {
+  private static final String USAGE = String.join("\n",
+      "Usage: generate_workload [options]",
+      "  --bytes <n>            stop after about n bytes (default 1048576)",
+      "  --tokens <n>           stop after about n tokens instead",
+      "  --max-depth <n>        maximum nesting of groups and unary operators (default 8)",
+      "  --nesting <p>          chance that an operand is a nested expression (default 0.3)",
+      "  --operators <mix>      binary operator weights (default " + Options.DEFAULT_OPERATORS + ")",
+      "  --unary-ratio <p>      chance that an operand is negated (default 0.1)",
+      "  --literals <mix>       literal weights (default " + Options.DEFAULT_LITERALS + ")",
+      "  --literal-density <p>  share of leaf operands that are literals, not identifiers (default 1)",
+      "  --comment-ratio <p>    chance of a comment after an operand (default 0)",
+      "  --error-rate <p>       chance of a deliberate error per top-level operand (default 0)",
+      "  --separator <s>        semicolon or newline: emit many expressions (default: one)",
+      "  --expression-tokens <n> tokens per expression with --separator (default 32)",
+      "  --seed <n>             random seed (default 0)",
+      "  --out <path>           output file (default stdout)");
+
+  public static class Options {
+    static final String DEFAULT_OPERATORS = "+:4,-:3,*:3,/:2,==:1,!=:1,<:1,<=:1,>:1,>=:1";
+    static final String DEFAULT_LITERALS = "number:6,string:2,true:1,false:1,nil:1";
+
+    public long bytes = 1 << 20;
+    public long tokens = 0;
+    public int maxDepth = 8;
+    public double nesting = 0.3;
+    public String operators = DEFAULT_OPERATORS;
+    public double unaryRatio = 0.1;
+    public String literals = DEFAULT_LITERALS;
+    public double literalDensity = 1.0;
+    public double commentRatio = 0.0;
+    public double errorRate = 0.0;
+    /** {@code ";"} or {@code "\n"} to emit a sequence of expressions, or null for just one. */
+    public String separator = null;
+    public int expressionTokens = 32;
+    public long seed = 0;
+  }
+
+  public static void main(String[] args) throws IOException {
+    Options options = new Options();
+    String out = null;
+    try {
+      for (int i = 0; i < args.length; i++) {
+        String flag = args[i];
+        if (i + 1 >= args.length) {
+          throw new IllegalArgumentException("Missing value for " + flag);
+        }
+        String value = args[++i];
+        switch (flag) {
+          case "--bytes":
+            options.bytes = Long.parseLong(value);
+            options.tokens = 0;
+            break;
+          case "--tokens":
+            options.tokens = Long.parseLong(value);
+            options.bytes = 0;
+            break;
+          case "--max-depth":
+            options.maxDepth = Integer.parseInt(value);
+            break;
+          case "--nesting":
+            options.nesting = Double.parseDouble(value);
+            break;
+          case "--operators":
+            options.operators = value;
+            break;
+          case "--unary-ratio":
+            options.unaryRatio = Double.parseDouble(value);
+            break;
+          case "--literals":
+            options.literals = value;
+            break;
+          case "--literal-density":
+            options.literalDensity = Double.parseDouble(value);
+            break;
+          case "--comment-ratio":
+            options.commentRatio = Double.parseDouble(value);
+            break;
+          case "--error-rate":
+            options.errorRate = Double.parseDouble(value);
+            break;
+          case "--separator":
+            if (value.equals("semicolon")) {
+              options.separator = ";";
+            } else if (value.equals("newline")) {
+              options.separator = "\n";
+            } else {
+              throw new IllegalArgumentException("Unknown separator " + value);
+            }
+            break;
+          case "--expression-tokens":
+            options.expressionTokens = Integer.parseInt(value);
+            break;
+          case "--seed":
+            options.seed = Long.parseLong(value);
+            break;
+          case "--out":
+            out = value;
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown option " + flag);
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      System.exit(64);
+    }
+
+    OutputStream stream = out == null ? System.out : new FileOutputStream(out);
+    try (Writer writer = new BufferedWriter(
+        new OutputStreamWriter(stream, StandardCharsets.US_ASCII), 1 << 16)) {
+      generate(options, writer);
+    }
+  }
+
+  /** Writes one workload to {@code out} and returns the number of bytes written. */
+  public static long generate(Options options, Appendable out) throws IOException {
+    Generator generator = new Generator(options, out);
+    generator.run();
+    return generator.bytes;
+  }
+
+  // ===============================================================================================
+
+  private static final int LINE_WIDTH = 80;
+  private static final String[] WORDS = {
+      "alpha", "beta", "gamma", "delta", "epsilon", "zeta", "eta", "theta", "iota", "kappa",
+      "lambda", "mu", "nu", "xi", "omicron", "pi", "rho", "sigma", "tau", "upsilon"
+  };
+
+  private static class Generator {
+    private final Options options;
+    private final Appendable out;
+    private final SplittableRandom random;
+    private final String[] operators;
+    private final int[] operatorWeights;
+    private final String[] literals;
+    private final int[] literalWeights;
+
+    private long bytes = 0;
+    private long tokens = 0;
+    private int column = 0;
+
+    Generator(Options options, Appendable out) {
+      this.options = options;
+      this.out = out;
+      this.random = new SplittableRandom(options.seed);
+      this.operatorWeights = weights(options.operators);
+      this.operators = names(options.operators);
+      this.literalWeights = weights(options.literals);
+      this.literals = names(options.literals);
+    }
+
+    void run() throws IOException {
+      operand(0);
+      long expressionStart = 0;
+      while (!done()) {
+        if (options.separator != null && tokens - expressionStart >= options.expressionTokens) {
+          separator();
+          expressionStart = tokens;
+          operand(0);
+          continue;
+        }
+        if (chance(options.errorRate)) {
+          error();
+        }
+        binaryOperator();
+        operand(0);
+      }
+      emit("\n");
+    }
+
+    private boolean done() {
+      return options.tokens > 0 ? tokens >= options.tokens : bytes >= options.bytes;
+    }
+
+    private void operand(int depth) throws IOException {
+      if (depth < options.maxDepth && !done()) {
+        if (chance(options.unaryRatio)) {
+          token(chance(0.5) ? "-" : "!");
+          operand(depth + 1);
+          return;
+        }
+        if (chance(options.nesting)) {
+          token("(");
+          operand(depth + 1);
+          int terms = random.nextInt(3);
+          for (int i = 0; i < terms; i++) {
+            binaryOperator();
+            operand(depth + 1);
+          }
+          token(")");
+          return;
+        }
+      }
+      leaf();
+      if (chance(options.commentRatio)) {
+        comment();
+      }
+    }
+
+    private void leaf() throws IOException {
+      if (!chance(options.literalDensity)) {
+        token(WORDS[random.nextInt(WORDS.length)] + "_" + random.nextInt(100));
+        return;
+      }
+      String literal = pick(literals, literalWeights);
+      switch (literal) {
+        case "number":
+          token(random.nextInt(4) == 0
+              ? random.nextInt(1000) + "." + random.nextInt(100)
+              : String.valueOf(random.nextInt(100000)));
+          break;
+        case "string": {
+          StringBuilder sb = new StringBuilder("\"");
+          int words = 1 + random.nextInt(6);
+          for (int i = 0; i < words; i++) {
+            sb.append(i == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+          }
+          token(sb.append('"').toString());
+          break;
+        }
+        default:
+          token(literal);
+          break;
+      }
+    }
+
+    private void binaryOperator() throws IOException {
+      token(pick(operators, operatorWeights));
+    }
+
+    private void separator() throws IOException {
+      if (options.separator.equals("\n")) {
+        emit("\n");
+        column = 0;
+      } else {
+        token(options.separator);
+      }
+    }
+
+    private void comment() throws IOException {
+      // A line comment would end the expression early when newlines separate expressions.
+      if (chance(0.5) && !"\n".equals(options.separator)) {
+        emit(" // " + WORDS[random.nextInt(WORDS.length)] + " comment\n");
+        column = 0;
+      } else {
+        emit(" /* " + WORDS[random.nextInt(WORDS.length)] + " /* nested */ comment */");
+      }
+    }
+
+    private void error() throws IOException {
+      switch (random.nextInt(3)) {
+        case 0:
+          token("@");
+          break;
+        case 1:
+          binaryOperator();
+          break;
+        default:
+          token(")");
+          break;
+      }
+    }
+
+    private void token(String text) throws IOException {
+      boolean wrap = !"\n".equals(options.separator);
+      if (wrap && column > 0 && column + text.length() >= LINE_WIDTH) {
+        emit("\n");
+        column = 0;
+      } else if (column > 0) {
+        emit(" ");
+      }
+      emit(text);
+      tokens++;
+    }
+
+    private void emit(String text) throws IOException {
+      out.append(text);
+      bytes += text.length();
+      column += text.length();
+    }
+
+    private boolean chance(double probability) {
+      return probability > 0 && random.nextDouble() < probability;
+    }
+
+    private String pick(String[] names, int[] weights) {
+      int r = random.nextInt(weights[weights.length - 1]);
+      for (int i = 0; i < weights.length; i++) {
+        if (r < weights[i]) {
+          return names[i];
+        }
+      }
+      throw new IllegalStateException();
+    }
+
+    /** Parses a {@code name:weight,...} mix into its names. */
+    private static String[] names(String mix) {
+      String[] entries = mix.split(",");
+      String[] names = new String[entries.length];
+      for (int i = 0; i < entries.length; i++) {
+        names[i] = entries[i].substring(0, entries[i].lastIndexOf(':')).trim();
+      }
+      return names;
+    }
+
+    /** Parses a {@code name:weight,...} mix into cumulative weights. */
+    private static int[] weights(String mix) {
+      String[] entries = mix.split(",");
+      int[] weights = new int[entries.length];
+      int total = 0;
+      for (int i = 0; i < entries.length; i++) {
+        int colon = entries[i].lastIndexOf(':');
+        if (colon < 0) {
+          throw new IllegalArgumentException("Expected name:weight but got " + entries[i]);
+        }
+        total += Integer.parseInt(entries[i].substring(colon + 1).trim());
+        weights[i] = total;
+      }
+      if (total <= 0) {
+        throw new IllegalArgumentException("Weights must add up to a positive number: " + mix);
+      }
+      return weights;
+    }
+  }
+}
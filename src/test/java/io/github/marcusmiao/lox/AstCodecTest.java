@@ -0,0 +1,114 @@
+package io.github.marcusmiao.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class AstCodecTest {
+  @BeforeEach
+  public void setUp() {
+    Lox.startRun();
+  }
+
+  private static Expr parse(String source) {
+    return new Parser(new Scanner(source).scanTokens()).parse();
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    String[] sources = {
+        "1 + 2 * 3 - 4 / 5",
+        "!(true == false) != nil",
+        "-(\"abc\" + \"abc\") >= -2.5",
+        "((((1))))",
+    };
+    for (String source : sources) {
+      Expr expr = parse(source);
+      Expr decoded = AstCodec.decode(ByteBuffer.wrap(AstCodec.encode(expr)));
+      assertEquals(new AstPrinter().print(expr), new AstPrinter().print(decoded));
+    }
+  }
+
+  @Test
+  public void testDeepTree() throws IOException {
+    StringBuilder sb = new StringBuilder("0");
+    for (int i = 1; i < 100_000; i++) {
+      sb.append(" + ").append(i);
+    }
+    Expr decoded = AstCodec.decode(ByteBuffer.wrap(AstCodec.encode(parse(sb.toString()))));
+    int depth = 0;
+    while (decoded instanceof Expr.Binary) {
+      decoded = ((Expr.Binary) decoded).left;
+      depth++;
+    }
+    assertEquals(99_999, depth);
+  }
+
+  @Test
+  public void testCorruptionDetected() {
+    byte[] bytes = AstCodec.encode(parse("1 + 2"));
+    for (int i = 0; i < bytes.length; i++) {
+      byte[] corrupt = bytes.clone();
+      corrupt[i] ^= 0x10;
+      assertThrows(AstCodec.FormatException.class,
+          () -> AstCodec.decode(ByteBuffer.wrap(corrupt)));
+    }
+    byte[] truncated = new byte[bytes.length - 1];
+    System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+    assertThrows(AstCodec.FormatException.class,
+        () -> AstCodec.decode(ByteBuffer.wrap(truncated)));
+  }
+
+  @Test
+  public void testCacheIgnoresCorruptEntries(@TempDir Path dir) throws IOException {
+    byte[] source = "1 + (2 * 3)".getBytes(StandardCharsets.UTF_8);
+    AstCache cache = new AstCache(dir, StandardCharsets.UTF_8);
+    assertNull(cache.load(source));
+
+    cache.store(source, parse("1 + (2 * 3)"));
+    assertEquals("(+ 1.0 (group (* 2.0 3.0)))", new AstPrinter().print(cache.load(source)));
+    assertNull(cache.load("1 + (2 * 4)".getBytes(StandardCharsets.UTF_8)));
+    assertNull(new AstCache(dir, StandardCharsets.UTF_16).load(source));
+
+    Path entry;
+    try (Stream<Path> entries = Files.list(dir)) {
+      entry = entries.findFirst().get();
+    }
+    byte[] bytes = Files.readAllBytes(entry);
+    bytes[bytes.length - 1] ^= 0x01;
+    Files.write(entry, bytes);
+    assertNull(cache.load(source));
+  }
+
+  @Test
+  public void testBudgetBypassesTheCache(@TempDir Path dir) {
+    byte[] source = "((1))".getBytes(Charset.defaultCharset());
+    AstCache cache = new AstCache(dir, Charset.defaultCharset());
+    cache.store(source, parse("((1))"));
+    AstCache saved = Lox.cache;
+    Lox.cache = cache;
+    try {
+      assertEquals("(group (group 1.0))", new AstPrinter().print(Lox.compile(source)));
+      assertFalse(Lox.hadError);
+      Lox.budget = Budget.parse("depth:1");
+      Lox.compile(source);
+      assertTrue(Lox.hadError);
+    } finally {
+      Lox.cache = saved;
+      Lox.budget = Budget.UNLIMITED;
+    }
+  }
+}
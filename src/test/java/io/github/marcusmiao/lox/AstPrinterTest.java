@@ -0,0 +1,39 @@
+package io.github.marcusmiao.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+
+public class AstPrinterTest {
+  private static Token token(TokenType type, String lexeme) {
+    return new Token(type, lexeme, null, 1);
+  }
+
+  @Test
+  public void testPrefixNotation() {
+    Expr expression = new Expr.Binary(
+        new Expr.Unary(token(TokenType.MINUS, "-"), new Expr.Literal(123)),
+        token(TokenType.STAR, "*"),
+        new Expr.Grouping(new Expr.Literal(null)));
+    assertEquals("(* (- 123) (group nil))", new AstPrinter().print(expression));
+  }
+
+  @Test
+  public void testDeepTreeStreams() throws IOException {
+    int depth = 1_000_000;
+    Token plus = token(TokenType.PLUS, "+");
+    Expr expr = new Expr.Literal(true);
+    for (int i = 0; i < depth; i++) {
+      expr = new Expr.Binary(expr, plus, new Expr.Literal(false));
+    }
+
+    StringBuilder out = new StringBuilder();
+    long written = new AstPrinter().print(expr, out);
+    assertEquals(out.length(), written);
+    assertEquals(depth * "(+ ".length() + "true".length() + depth * " false)".length(), written);
+    assertTrue(out.toString().startsWith("(+ (+ (+ "));
+    assertTrue(out.toString().startsWith("true false) false)", depth * "(+ ".length()));
+  }
+}
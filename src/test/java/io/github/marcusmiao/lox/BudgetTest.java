@@ -0,0 +1,91 @@
+package io.github.marcusmiao.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class BudgetTest {
+  private static List<Diagnostic> diagnostics(String source, String budget) {
+    DiagnosticSink.Collecting sink = new DiagnosticSink.Collecting(100);
+    new FrontEnd().parse(source, sink, Budget.parse(budget));
+    return sink.diagnostics();
+  }
+
+  private static String repeat(String s, int times) {
+    StringBuilder sb = new StringBuilder(s.length() * times);
+    for (int i = 0; i < times; i++) {
+      sb.append(s);
+    }
+    return sb.toString();
+  }
+
+  @Test
+  public void testWithinBudget() {
+    DiagnosticSink.Collecting sink = new DiagnosticSink.Collecting(100);
+    Expr expr = new FrontEnd().parse("-(1 + 2) * 3", sink,
+        Budget.parse("source:12,tokens:9,nodes:8,depth:2,time:1000"));
+    assertNotNull(expr);
+    assertEquals(0, sink.errorCount());
+  }
+
+  @Test
+  public void testSource() {
+    assertEquals("[line 1] Error: Source of 5 characters exceeds the budget of 4",
+        diagnostics("1 + 2", "source:4").get(0).format());
+  }
+
+  @Test
+  public void testTokens() {
+    List<Diagnostic> diagnostics = diagnostics(repeat("1 + ", 1000) + "1", "tokens:100");
+    assertEquals("[line 1] Error: Exceeded the budget of 100 tokens",
+        diagnostics.get(0).format());
+    assertEquals(Diagnostic.Phase.SCAN, diagnostics.get(0).phase());
+  }
+
+  @Test
+  public void testNodes() {
+    List<Diagnostic> diagnostics = diagnostics(repeat("1 + ", 1000) + "1", "nodes:100");
+    assertEquals(1, diagnostics.size());
+    assertEquals("[line 1] Error at '1': Exceeded the budget of 100 nodes",
+        diagnostics.get(0).format());
+  }
+
+  @Test
+  public void testDepthInsteadOfStackOverflow() {
+    String source = repeat("(", 1_000_000) + "1" + repeat(")", 1_000_000);
+    List<Diagnostic> diagnostics = diagnostics(source, "depth:256");
+    assertEquals(1, diagnostics.size());
+    assertEquals("[line 1] Error at '(': Exceeded the nesting budget of 256",
+        diagnostics.get(0).format());
+    assertEquals(256, diagnostics.get(0).offset());
+  }
+
+  @Test
+  public void testDepthAfterRecovery() {
+    List<Diagnostic> diagnostics = diagnostics("(((1 +))) ; ((1))", "depth:3");
+    assertEquals(1, diagnostics.size());
+    assertEquals("[line 1] Error at ')': Expect expression.", diagnostics.get(0).format());
+  }
+
+  @Test
+  public void testTime() {
+    List<Diagnostic> diagnostics = diagnostics(repeat("1 + ", 2_000_000) + "1", "time:1");
+    assertEquals("Exceeded the time budget of 1 ms", diagnostics.get(0).message());
+  }
+
+  @Test
+  public void testParse() {
+    assertEquals("source:2147483647,tokens:10,nodes:2147483647,depth:3,time:0",
+        Budget.parse("tokens:10, depth:3").toString());
+    assertEquals("source:1048576,tokens:1000,nodes:2147483647,depth:256,time:1000",
+        Budget.parse("tokens:1000", LoxServer.DEFAULT_BUDGET).toString());
+    assertThrows(IllegalArgumentException.class, () -> Budget.parse("steps:10"));
+    assertThrows(IllegalArgumentException.class, () -> Budget.parse("bogus"));
+    assertThrows(IllegalArgumentException.class, () -> Budget.parse("depth:x"));
+    assertThrows(IllegalArgumentException.class, () -> Budget.parse("depth:0"));
+    assertThrows(IllegalArgumentException.class, () -> Budget.parse("depth"));
+  }
+}
@@ -0,0 +1,68 @@
+package io.github.marcusmiao.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class DiagnosticsTest {
+  private static List<Diagnostic> diagnostics(String source, int maxErrors) {
+    DiagnosticSink.Collecting sink = new DiagnosticSink.Collecting(maxErrors);
+    new Parser(new Scanner(source, new SymbolTable(), sink).scanTokens(), sink).parse();
+    return sink.diagnostics();
+  }
+
+  @Test
+  public void testScannerReportsEveryError() {
+    List<Diagnostic> diagnostics = diagnostics("1 @ 2\n# 3", 100);
+    assertEquals("[line 1] Error: Unexpected character '@'", diagnostics.get(0).format());
+    assertEquals(2, diagnostics.get(0).offset());
+    assertEquals("[line 2] Error: Unexpected character '#'", diagnostics.get(1).format());
+    assertEquals(6, diagnostics.get(1).offset());
+    assertEquals(Diagnostic.Phase.SCAN, diagnostics.get(1).phase());
+  }
+
+  @Test
+  public void testParserRecoversAtSemicolon() {
+    List<Diagnostic> diagnostics = diagnostics("1 + ; (2 ; * 3", 100);
+    assertEquals(3, diagnostics.size());
+    assertEquals("[line 1] Error at ';': Expect expression.", diagnostics.get(0).format());
+    assertEquals("[line 1] Error at ';': Expect ')' after expression",
+        diagnostics.get(1).format());
+    assertEquals("[line 1] Error at '*': Expect expression.", diagnostics.get(2).format());
+    assertEquals(Diagnostic.Phase.PARSE, diagnostics.get(2).phase());
+  }
+
+  @Test
+  public void testMaxErrors() {
+    DiagnosticSink.Collecting sink = new DiagnosticSink.Collecting(3);
+    new Scanner("@ @ @ @ @ @", new SymbolTable(), sink).scanTokens();
+    assertEquals(3, sink.diagnostics().size());
+    assertTrue(sink.isFull());
+  }
+
+  @Test
+  public void testEveryRunHasItsOwnLimit() {
+    Lox.run("@ ".repeat(Lox.DEFAULT_MAX_ERRORS + 1));
+    assertTrue(Lox.console.isFull());
+    Lox.run("1 + 2");
+    assertFalse(Lox.console.isFull());
+    assertFalse(Lox.console.hadError());
+  }
+
+  @Test
+  public void testJsonLines() {
+    StringBuilder out = new StringBuilder();
+    DiagnosticSink.JsonLines sink = new DiagnosticSink.JsonLines(out, 1);
+    new Scanner("\"open", new SymbolTable(), sink).scanTokens();
+    sink.report(new Diagnostic(Diagnostic.Severity.ERROR, 0, 1, "", "dropped",
+        Diagnostic.Phase.PARSE));
+    assertEquals("", out.toString());
+    sink.flush();
+    assertEquals("{\"severity\":\"error\",\"phase\":\"scan\",\"line\":1,\"offset\":0,"
+        + "\"where\":\"\",\"message\":\"Unexpected end of string\"}\n"
+        + "{\"severity\":\"warning\",\"dropped\":1}\n", out.toString());
+  }
+}
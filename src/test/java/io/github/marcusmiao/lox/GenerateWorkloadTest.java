@@ -0,0 +1,71 @@
+package io.github.marcusmiao.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.marcusmiao.tool.GenerateWorkload;
+import java.io.IOException;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class GenerateWorkloadTest {
+  @BeforeEach
+  public void setUp() {
+    Lox.startRun();
+  }
+
+  private static String generate(GenerateWorkload.Options options) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    long bytes = GenerateWorkload.generate(options, sb);
+    assertEquals(sb.length(), bytes);
+    return sb.toString();
+  }
+
+  @Test
+  public void testValidByDefault() throws IOException {
+    for (long seed = 0; seed < 20; seed++) {
+      GenerateWorkload.Options options = new GenerateWorkload.Options();
+      options.bytes = 20_000;
+      options.commentRatio = 0.2;
+      options.seed = seed;
+      String source = generate(options);
+      assertTrue(source.length() >= options.bytes);
+      List<Token> tokens = new Scanner(source).scanTokens();
+      assertNotNull(new Parser(tokens).parse());
+      assertFalse(Lox.hadError);
+    }
+  }
+
+  @Test
+  public void testTokenBudget() throws IOException {
+    GenerateWorkload.Options options = new GenerateWorkload.Options();
+    options.tokens = 5_000;
+    options.maxDepth = 4;
+    int tokens = new Scanner(generate(options)).scanTokens().size() - 1;
+    assertTrue(tokens >= 5_000 && tokens < 5_000 + 200, "tokens = " + tokens);
+  }
+
+  @Test
+  public void testSeedIsReproducible() throws IOException {
+    GenerateWorkload.Options options = new GenerateWorkload.Options();
+    options.bytes = 4096;
+    options.seed = 42;
+    String first = generate(options);
+    assertEquals(first, generate(options));
+    options.seed = 43;
+    assertNotEquals(first, generate(options));
+  }
+
+  @Test
+  public void testErrorRate() throws IOException {
+    GenerateWorkload.Options options = new GenerateWorkload.Options();
+    options.bytes = 4096;
+    options.errorRate = 0.5;
+    new Parser(new Scanner(generate(options)).scanTokens()).parse();
+    assertTrue(Lox.hadError);
+  }
+}
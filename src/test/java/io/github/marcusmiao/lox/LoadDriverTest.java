@@ -0,0 +1,49 @@
+package io.github.marcusmiao.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class LoadDriverTest {
+  private static final List<String> CORPUS = Arrays.asList("1 + 2 * 3", "-(4 / 5)", "1 +");
+
+  private static LoadDriver.Options options() {
+    LoadDriver.Options options = new LoadDriver.Options();
+    options.workers = 2;
+    options.warmup = 0;
+    options.duration = 0.2;
+    options.label = "test \"run\"";
+    return options;
+  }
+
+  @Test
+  public void testClosedModel() throws InterruptedException {
+    LoadDriver.Result result = LoadDriver.run(CORPUS, options());
+    assertTrue(result.requests > 3);
+    // Every third request is the invalid source.
+    assertTrue(Math.abs(result.requests / 3 - result.errors) <= 2);
+    assertTrue(result.p50 <= result.p99 && result.p99 <= result.max);
+    assertTrue(result.seconds >= 0.2);
+  }
+
+  @Test
+  public void testOpenModel() throws InterruptedException {
+    LoadDriver.Options options = options();
+    options.rate = 1000;
+    LoadDriver.Result result = LoadDriver.run(CORPUS, options);
+    assertEquals(200, result.requests);
+    assertTrue(result.toString().startsWith("test \"run\": open 1000.0/s model, 2 workers"));
+  }
+
+  @Test
+  public void testJson() throws InterruptedException {
+    String json = LoadDriver.run(CORPUS, options()).toJson();
+    assertTrue(json.startsWith("{\"label\":\"test \\\"run\\\"\",\"java\":\""));
+    assertTrue(json.contains("\"model\":\"closed\",\"rate\":0.0,\"workers\":2,\"corpus\":3,"));
+    assertTrue(json.contains(",\"latencyNanos\":{\"mean\":"));
+    assertTrue(json.endsWith("}"));
+  }
+}
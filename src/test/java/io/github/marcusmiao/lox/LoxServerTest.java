@@ -0,0 +1,163 @@
+package io.github.marcusmiao.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class LoxServerTest {
+  private LoxServer server;
+  private Thread acceptor;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    server = new LoxServer(LoxServer.parseAddress("0"));
+    acceptor = new Thread(() -> {
+      try {
+        server.serve();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    acceptor.start();
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    server.close();
+    acceptor.join();
+  }
+
+  private static String request(DataOutputStream out, DataInputStream in, byte type,
+      String payload, byte expectedStatus) throws IOException {
+    byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+    out.writeByte(type);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+    out.flush();
+    assertEquals(expectedStatus, in.readByte());
+    byte[] body = new byte[in.readInt()];
+    in.readFully(body);
+    return new String(body, StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testRequestsOnOneConnection() throws IOException {
+    InetSocketAddress address = (InetSocketAddress) server.address();
+    try (Socket socket = new Socket(address.getAddress(), address.getPort());
+         DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+         DataInputStream in = new DataInputStream(socket.getInputStream())) {
+      assertEquals("(+ 1.0 (* 2.0 3.0))",
+          request(out, in, LoxServer.EVAL, "1 + 2 * 3", LoxServer.OK));
+      assertEquals("[line 1] Error at end: Expect expression.\n",
+          request(out, in, LoxServer.EVAL, "1 +", LoxServer.ERROR));
+      assertEquals("(- true)", request(out, in, LoxServer.EVAL, "-true", LoxServer.OK));
+      assertTrue(request(out, in, LoxServer.STATS, "", LoxServer.OK).startsWith("count 3,"));
+    }
+  }
+
+  @Test
+  public void testDeepInputIsAnswered() throws Exception {
+    String deep = "(".repeat(200_000) + "1" + ")".repeat(200_000);
+    InetSocketAddress address = (InetSocketAddress) server.address();
+    try (Socket socket = new Socket(address.getAddress(), address.getPort());
+         DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+         DataInputStream in = new DataInputStream(socket.getInputStream())) {
+      assertEquals("[line 1] Error at '(': Exceeded the nesting budget of 256\n",
+          request(out, in, LoxServer.EVAL, deep, LoxServer.ERROR));
+      assertEquals("(- 1.0)", request(out, in, LoxServer.EVAL, "-1", LoxServer.OK));
+    }
+
+    // Without a budget the stack overflows, and the client still gets an answer.
+    try (LoxServer unlimited = new LoxServer(LoxServer.parseAddress("0"), Budget.UNLIMITED)) {
+      Thread thread = new Thread(() -> {
+        try {
+          unlimited.serve();
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      });
+      thread.start();
+      address = (InetSocketAddress) unlimited.address();
+      try (Socket socket = new Socket(address.getAddress(), address.getPort());
+           DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+           DataInputStream in = new DataInputStream(socket.getInputStream())) {
+        assertTrue(request(out, in, LoxServer.EVAL, deep, LoxServer.ERROR)
+            .startsWith("Internal error: java.lang.StackOverflowError"));
+        assertEquals("(- 1.0)", request(out, in, LoxServer.EVAL, "-1", LoxServer.OK));
+      }
+      unlimited.close();
+      thread.join();
+    }
+  }
+
+  @Test
+  public void testFrameLimitFollowsTheBudget() throws Exception {
+    try (LoxServer small = new LoxServer(LoxServer.parseAddress("0"), Budget.parse("source:10"))) {
+      Thread thread = new Thread(() -> {
+        try {
+          small.serve();
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      });
+      thread.start();
+      InetSocketAddress address = (InetSocketAddress) small.address();
+      try (Socket socket = new Socket(address.getAddress(), address.getPort());
+           DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+           DataInputStream in = new DataInputStream(socket.getInputStream())) {
+        assertEquals("(+ 1.0 2.0)", request(out, in, LoxServer.EVAL, "1 + 2", LoxServer.OK));
+        // Only the header is sent: the answer must not wait for a payload.
+        out.writeByte(LoxServer.EVAL);
+        out.writeInt(31);
+        out.flush();
+        assertEquals(LoxServer.ERROR, in.readByte());
+        byte[] body = new byte[in.readInt()];
+        in.readFully(body);
+        assertEquals("Frame length 31 out of range", new String(body, StandardCharsets.UTF_8));
+      }
+      small.close();
+      thread.join();
+    }
+  }
+
+  @Test
+  public void testConcurrentClients() throws Exception {
+    InetSocketAddress address = (InetSocketAddress) server.address();
+    ExecutorService clients = Executors.newFixedThreadPool(16);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < 64; i++) {
+        int n = i;
+        Callable<String> client = () -> {
+          try (Socket socket = new Socket(address.getAddress(), address.getPort());
+               DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+               DataInputStream in = new DataInputStream(socket.getInputStream())) {
+            return request(out, in, LoxServer.EVAL, n + " - " + n, LoxServer.OK);
+          }
+        };
+        results.add(clients.submit(client));
+      }
+      for (int i = 0; i < results.size(); i++) {
+        assertEquals("(- " + (double) i + " " + (double) i + ")", results.get(i).get());
+      }
+    } finally {
+      clients.shutdown();
+    }
+    assertEquals(64, server.latency().count());
+  }
+}
@@ -0,0 +1,45 @@
+package io.github.marcusmiao.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class MetricsTest {
+  @BeforeEach
+  public void setUp() {
+    Lox.startRun();
+    Metrics.enable();
+    Metrics.reset();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    Metrics.disable();
+    Metrics.reset();
+  }
+
+  @Test
+  public void testPhaseCounters() {
+    Lox.run("-(1 + 2) * !(3)");
+    Metrics.Snapshot snapshot = Metrics.snapshot();
+    assertEquals(1, snapshot.runs);
+    assertEquals(15, snapshot.chars);
+    assertEquals(12, snapshot.tokens);
+    assertEquals(9, snapshot.nodes);
+    assertEquals(2, snapshot.maxDepth);
+    assertEquals(0, snapshot.scanErrors + snapshot.parseErrors);
+    assertTrue(snapshot.printNanos > 0);
+  }
+
+  @Test
+  public void testErrorCounters() {
+    Lox.run("1 + @");
+    Metrics.Snapshot snapshot = Metrics.snapshot();
+    assertEquals(1, snapshot.scanErrors);
+    assertEquals(1, snapshot.parseErrors);
+    assertEquals(0, snapshot.printNanos);
+  }
+}
@@ -0,0 +1,64 @@
+package io.github.marcusmiao.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ProfilerTest {
+  @BeforeEach
+  public void setUp() {
+    Lox.startRun();
+  }
+
+  private static Profiler profile(String source, int sampleEvery) throws IOException {
+    Profiler profiler = new Profiler(sampleEvery);
+    new AstPrinter(profiler).print(new Parser(new Scanner(source).scanTokens()).parse(),
+        new StringBuilder());
+    return profiler;
+  }
+
+  @Test
+  public void testCollapsedStacks() throws IOException {
+    StringBuilder out = new StringBuilder();
+    profile("1 + 2 * 3 +\n-(4)", 1000).writeCollapsed(out);
+    assertEquals(String.join("\n",
+        "binary + @1 2",
+        "binary + @1;literal @1 1",
+        "binary + @1;binary * @1 1",
+        "binary + @1;binary * @1;literal @1 2",
+        "binary + @1;unary - @2 1",
+        "binary + @1;unary - @2;group @2 1",
+        "binary + @1;unary - @2;group @2;literal @2 1",
+        ""), out.toString());
+  }
+
+  @Test
+  public void testReport() throws IOException {
+    StringBuilder out = new StringBuilder();
+    profile("1 + 2 + 3 + (4 * 5)", 1).report(out, 2);
+    String[] lines = out.toString().split(System.lineSeparator());
+    assertEquals(3, lines.length);
+    assertTrue(lines[1].matches(" +5 +[0-9.]+  literal @1"), lines[1]);
+    assertTrue(lines[2].matches(" +3 +[0-9.]+  binary \\+ @1"), lines[2]);
+  }
+
+  @Test
+  public void testDeepChainFolds() throws IOException {
+    StringBuilder sb = new StringBuilder("0");
+    for (int i = 1; i < 100_000; i++) {
+      sb.append(i % 2 == 0 ? " + " : " * ").append(i);
+    }
+    StringBuilder out = new StringBuilder();
+    profile(sb.toString(), 64).writeCollapsed(out);
+    String[] lines = out.toString().split("\n");
+    long total = 0;
+    for (String line : lines) {
+      assertTrue(line.split(";").length <= Profiler.MAX_PATH_DEPTH, line);
+      total += Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+    }
+    assertEquals(100_000 + 99_999, total);
+  }
+}
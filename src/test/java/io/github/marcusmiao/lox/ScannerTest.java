@@ -12,7 +12,7 @@ import org.junit.jupiter.api.Test;
 public class ScannerTest {
   @BeforeEach
   public void setUp() {
-    Lox.hadError = false;
+    Lox.startRun();
   }
 
   @Test
@@ -217,4 +217,20 @@ public class ScannerTest {
     scanner.scanTokens();
     assertTrue(Lox.hadError);
   }
+
+  @Test
+  public void testReset() {
+    Scanner scanner = new Scanner("\"a long string literal\" + 12345 /* comment\n */");
+    List<Token> first = scanner.scanTokens();
+    assertEquals(4, first.size());
+    assertEquals(2, first.get(3).line);
+
+    scanner.reset("(x)", Lox.console);
+    List<Token> second = scanner.scanTokens();
+    assertEquals(4, second.size());
+    assertEquals(TokenType.LEFT_PAREN, second.get(0).type);
+    assertEquals("x", second.get(1).lexeme);
+    assertEquals(TokenType.RIGHT_PAREN, second.get(2).type);
+    assertEquals(1, second.get(3).line);
+  }
 }
@@ -0,0 +1,146 @@
+package io.github.marcusmiao.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.marcusmiao.tool.GenerateWorkload;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PipedReader;
+import java.io.PipedWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class StreamTest {
+  @BeforeEach
+  public void setUp() {
+    Lox.startRun();
+  }
+
+  private static List<String> split(String input, boolean lines, int maxChars,
+      DiagnosticSink sink) throws IOException {
+    ExpressionReader reader = new ExpressionReader(new StringReader(input), lines, maxChars, sink);
+    List<String> expressions = new ArrayList<>();
+    while (reader.next()) {
+      expressions.add(reader.line() + ":" + reader.offset() + ":" + reader.source());
+    }
+    return expressions;
+  }
+
+  @Test
+  public void testSemicolons() throws IOException {
+    DiagnosticSink.Collecting sink = new DiagnosticSink.Collecting(10);
+    assertEquals(List.of("1:0:1 + 2", "1:6: \"a;b\" // ;\n", "2:19:\n/* ; /* ; */ */ 3 / 4"),
+        split("1 + 2; \"a;b\" // ;\n;\n/* ; /* ; */ */ 3 / 4;; // end", false, 100, sink));
+    assertEquals(0, sink.errorCount());
+  }
+
+  @Test
+  public void testLines() throws IOException {
+    DiagnosticSink.Collecting sink = new DiagnosticSink.Collecting(10);
+    assertEquals(List.of("1:0:1", "2:2:2 // x", "4:10:\"one line\"", "5:22: 4"),
+        split("1\n2 // x\n\n\"one line\";\n 4", true, 100, sink));
+    assertEquals(0, sink.errorCount());
+  }
+
+  @Test
+  public void testNewlineEndsOpenStringInLinesMode() throws IOException {
+    DiagnosticSink.Collecting sink = new DiagnosticSink.Collecting(10);
+    assertEquals(List.of("1:0:\"abc", "2:5:/* x", "3:10:3"),
+        split("\"abc\n/* x\n3", true, 100, sink));
+    assertEquals(List.of("1:0:\"abc\n3"), split("\"abc\n3", false, 100, sink));
+
+    StringWriter out = new StringWriter();
+    assertFalse(Lox.stream(new StringReader("1 + 2\n\"abc\n3 * 4\n5 - 6"), out, true));
+    String nl = System.lineSeparator();
+    assertEquals("(+ 1.0 2.0)" + nl + "(* 3.0 4.0)" + nl + "(- 5.0 6.0)" + nl, out.toString());
+  }
+
+  @Test
+  public void testTrailingTokens() throws IOException {
+    StringWriter out = new StringWriter();
+    assertFalse(Lox.stream(new StringReader("1 2; 3"), out, false));
+    assertEquals("3.0" + System.lineSeparator(), out.toString());
+  }
+
+  @Test
+  public void testLongExpressionSkipped() throws IOException {
+    DiagnosticSink.Collecting sink = new DiagnosticSink.Collecting(10);
+    assertEquals(List.of("1:0:1", "1:29: 2"),
+        split("1; 1 + 1 + 1 + 1 + 1 + 1 + \"; 2", false, 20, sink));
+    assertEquals("[line 1] Error: Expression longer than 20 characters\n", sink.toString());
+  }
+
+  @Test
+  public void testUnterminatedCommentAtEnd() throws IOException {
+    DiagnosticSink.Collecting sink = new DiagnosticSink.Collecting(10);
+    assertEquals(List.of("1:0:/*"), split("/*", false, 100, sink));
+    assertEquals(List.of("1:0:1", "1:2: (2 /* x"), split("1; (2 /* x", false, 100, sink));
+
+    StringWriter out = new StringWriter();
+    assertFalse(Lox.stream(new StringReader("/*"), out, false));
+    assertEquals("", out.toString());
+    assertFalse(Lox.stream(new StringReader("1; (2 /* x"), out, false));
+    assertEquals("1.0" + System.lineSeparator(), out.toString());
+  }
+
+  @Test
+  public void testBadExpressionsDoNotStopTheStream() throws IOException {
+    StringWriter out = new StringWriter();
+    assertFalse(Lox.stream(new StringReader("1 + 2;\n(3;\n-4;\n5 @ 6; 7"), out, false));
+    String nl = System.lineSeparator();
+    assertEquals("(+ 1.0 2.0)" + nl + "(- 4.0)" + nl + "7.0" + nl, out.toString());
+  }
+
+  @Test
+  public void testOutputIsIncremental() throws Exception {
+    PipedWriter input = new PipedWriter();
+    PipedReader reader = new PipedReader(input);
+    StringWriter result = new StringWriter();
+    Writer out = new BufferedWriter(result, 1 << 16);
+    Thread streamer = new Thread(() -> {
+      try {
+        Lox.stream(reader, out, false);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+    streamer.start();
+    input.write("1 + 2; 3");
+    input.flush();
+    long deadline = System.nanoTime() + 10_000_000_000L;
+    while (!result.toString().equals("(+ 1.0 2.0)" + System.lineSeparator())) {
+      assertTrue(System.nanoTime() < deadline, "no output before the input was closed");
+      Thread.sleep(10);
+    }
+    input.close();
+    streamer.join();
+    assertEquals("(+ 1.0 2.0)" + System.lineSeparator() + "3.0" + System.lineSeparator(),
+        result.toString());
+  }
+
+  @Test
+  public void testGeneratedStream() throws IOException {
+    for (String separator : new String[] {";", "\n"}) {
+      GenerateWorkload.Options options = new GenerateWorkload.Options();
+      options.tokens = 20_000;
+      options.commentRatio = 0.2;
+      options.separator = separator;
+      options.expressionTokens = 50;
+      StringBuilder source = new StringBuilder();
+      GenerateWorkload.generate(options, source);
+
+      StringWriter out = new StringWriter();
+      assertTrue(Lox.stream(new StringReader(source.toString()), out, separator.equals("\n")));
+      int results = out.toString().split(System.lineSeparator()).length;
+      assertTrue(results > 20_000 / 60 && results <= 20_000 / 50 + 1, "results = " + results);
+    }
+  }
+}
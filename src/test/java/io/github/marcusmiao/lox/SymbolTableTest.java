@@ -0,0 +1,100 @@
+package io.github.marcusmiao.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public class SymbolTableTest {
+  @Test
+  public void testInternFromRange() {
+    SymbolTable symbols = new SymbolTable();
+    char[] source = "foo bar foo".toCharArray();
+    int foo = symbols.intern(source, 0, 3);
+    int bar = symbols.intern(source, 4, 7);
+    assertEquals(foo, symbols.intern(source, 8, 11));
+    assertNotEquals(foo, bar);
+    assertEquals("foo", symbols.name(foo));
+    assertEquals("bar", symbols.name(bar));
+    assertNull(symbols.keyword(foo));
+  }
+
+  @Test
+  public void testKeywordsArePreInterned() {
+    SymbolTable symbols = new SymbolTable();
+    assertEquals(Scanner.KEY_WORDS.size(), symbols.size());
+    assertEquals(TokenType.WHILE, symbols.keyword(symbols.intern("while".toCharArray(), 0, 5)));
+    assertEquals(Scanner.KEY_WORDS.size(), symbols.size());
+  }
+
+  @Test
+  public void testGrowth() {
+    SymbolTable symbols = new SymbolTable();
+    int[] ids = new int[10_000];
+    for (int i = 0; i < ids.length; i++) {
+      String name = "name" + i;
+      ids[i] = symbols.intern(name.toCharArray(), 0, name.length());
+    }
+    for (int i = 0; i < ids.length; i++) {
+      String name = "name" + i;
+      assertEquals(ids[i], symbols.intern(name.toCharArray(), 0, name.length()));
+      assertEquals(name, symbols.name(ids[i]));
+    }
+    assertEquals(Scanner.KEY_WORDS.size() + ids.length, symbols.size());
+
+    symbols.clear();
+    assertEquals(Scanner.KEY_WORDS.size(), symbols.size());
+    assertEquals(TokenType.AND, symbols.keyword(symbols.intern("and".toCharArray(), 0, 3)));
+    assertEquals(Scanner.KEY_WORDS.size(), symbols.intern("name0".toCharArray(), 0, 5));
+  }
+
+  @Test
+  public void testTrim() {
+    SymbolTable symbols = new SymbolTable();
+    for (int i = 0; i < 100_000; i++) {
+      String name = "name" + i;
+      symbols.intern(name.toCharArray(), 0, name.length());
+    }
+    symbols.trim(64 << 10);
+    assertEquals(Scanner.KEY_WORDS.size(), symbols.size());
+    assertEquals(TokenType.OR, symbols.keyword(symbols.intern("or".toCharArray(), 0, 2)));
+    int name = symbols.intern("name7".toCharArray(), 0, 5);
+    assertEquals(Scanner.KEY_WORDS.size(), name);
+    assertEquals(name, symbols.intern("name7".toCharArray(), 0, 5));
+  }
+
+  @Test
+  public void testCollidingStringHashesSpread() {
+    SymbolTable symbols = new SymbolTable();
+    Set<Integer> hashes = new HashSet<>();
+    for (int i = 0; i < 256; i++) {
+      StringBuilder name = new StringBuilder();
+      for (int bit = 0; bit < 8; bit++) {
+        name.append((i >> bit & 1) == 0 ? "Aa" : "BB");
+      }
+      char[] chars = name.toString().toCharArray();
+      assertEquals("AaAaAaAaAaAaAaAa".hashCode(), name.toString().hashCode());
+      hashes.add(symbols.hash(chars, 0, chars.length));
+      assertEquals(Scanner.KEY_WORDS.size() + i, symbols.intern(chars, 0, chars.length));
+    }
+    assertTrue(hashes.size() > 250, "distinct hashes: " + hashes.size());
+  }
+
+  @Test
+  public void testScannerSharesLexemes() {
+    List<Token> tokens = new Scanner("answer + answer + other").scanTokens();
+    Token first = tokens.get(0);
+    Token second = tokens.get(2);
+    assertEquals(TokenType.IDENTIFIER, first.type);
+    assertEquals(first.symbol, second.symbol);
+    assertSame(first.lexeme, second.lexeme);
+    assertNotEquals(first.symbol, tokens.get(4).symbol);
+    assertEquals(-1, tokens.get(1).symbol);
+  }
+}